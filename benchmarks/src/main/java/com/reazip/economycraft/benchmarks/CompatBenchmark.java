@@ -0,0 +1,70 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.mojang.authlib.GameProfile;
+import com.reazip.economycraft.util.ChatCompat;
+import com.reazip.economycraft.util.IdentityCompat;
+import net.minecraft.network.chat.ClickEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The version-compat shims: GameProfile access through the bound method handles against the per-call
+ * reflective lookup they replaced, and ClickEvent creation for interned and ad-hoc commands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompatBenchmark {
+    private GameProfile profile;
+
+    @Setup
+    public void setUp() {
+        Fixtures.registries();
+        profile = new GameProfile(UUID.randomUUID(), "Benchmark");
+    }
+
+    @Benchmark
+    public IdentityCompat.PlayerRef profileHandles() {
+        return IdentityCompat.of(profile);
+    }
+
+    @Benchmark
+    public IdentityCompat.PlayerRef profileReflectionPerCall() throws ReflectiveOperationException {
+        return new IdentityCompat.PlayerRef((UUID) invoke(profile, "id", "getId"), (String) invoke(profile, "name", "getName"));
+    }
+
+    private static Object invoke(Object target, String... names) throws ReflectiveOperationException {
+        for (String name : names) {
+            try {
+                Method m = target.getClass().getMethod(name);
+                return m.invoke(target);
+            } catch (NoSuchMethodException ignored) {}
+        }
+        throw new NoSuchMethodException(names[0]);
+    }
+
+    @Benchmark
+    public ClickEvent clickEventInterned() {
+        return ChatCompat.runCommandEvent("/eco orders claim");
+    }
+
+    @Benchmark
+    public ClickEvent clickEventAdHoc() {
+        return ChatCompat.runCommandEvent("/ah search diamond");
+    }
+}
@@ -0,0 +1,49 @@
+package com.reazip.economycraft.benchmarks;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.data.registries.VanillaRegistries;
+import net.minecraft.server.Bootstrap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/** Shared setup: vanilla registries without a server, and reproducible synthetic data. */
+final class Fixtures {
+    private static HolderLookup.Provider registries;
+
+    private Fixtures() {}
+
+    /** Bootstraps the built-in registries once and returns a lookup that also holds the data-driven ones (enchantments). */
+    static synchronized HolderLookup.Provider registries() {
+        if (registries == null) {
+            SharedConstants.tryDetectVersion();
+            Bootstrap.bootStrap();
+            registries = VanillaRegistries.createLookup();
+        }
+        return registries;
+    }
+
+    static UUID[] players(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] out = new UUID[count];
+        for (int i = 0; i < count; i++) out[i] = new UUID(random.nextLong(), random.nextLong());
+        return out;
+    }
+
+    static Path tempDir(String name) throws IOException {
+        return Files.createTempDirectory("economycraft-bench-" + name);
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || Files.notExists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
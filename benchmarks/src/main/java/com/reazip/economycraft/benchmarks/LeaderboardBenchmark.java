@@ -0,0 +1,74 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.reazip.economycraft.Leaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** {@code /bal top}: the first page, a deep page, a player's rank, and a balance change followed by a page read. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int accounts;
+
+    private final Leaderboard leaderboard = new Leaderboard();
+    private UUID[] players;
+    private long[] balances;
+
+    @Setup
+    public void setUp() {
+        players = Fixtures.players(accounts, 7L);
+        balances = new long[accounts];
+        Random random = new Random(7L);
+        Map<UUID, Long> map = new HashMap<>();
+        for (int i = 0; i < accounts; i++) {
+            balances[i] = random.nextInt(1_000_000);
+            map.put(players[i], balances[i]);
+        }
+        leaderboard.rebuild(map);
+    }
+
+    @Benchmark
+    public List<Map.Entry<UUID, Long>> topPage() {
+        return leaderboard.page(0, 10);
+    }
+
+    @Benchmark
+    public List<Map.Entry<UUID, Long>> middlePage() {
+        return leaderboard.page(accounts / 2, 10);
+    }
+
+    @Benchmark
+    public int rank() {
+        return leaderboard.rank(players[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public List<Map.Entry<UUID, Long>> updateThenTopPage() {
+        int i = ThreadLocalRandom.current().nextInt(accounts);
+        balances[i] += 1;
+        leaderboard.update(players[i], balances[i]);
+        return leaderboard.page(0, 10);
+    }
+}
@@ -0,0 +1,89 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.core.Ledger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance mutation throughput through the {@link Ledger} behind EconomyManager (stripe lock, balance map,
+ * journal append, dirty mark, leaderboard move), single-threaded and with 8 contending threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    private Path dir;
+    private UUID[] players;
+    private Ledger ledger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Fixtures.tempDir("ledger");
+        players = Fixtures.players(accounts, 42L);
+        Map<UUID, Long> start = new HashMap<>();
+        for (UUID p : players) start.put(p, 1_000L);
+        ledger = new Ledger(dir, () -> 1_000L, Long.MAX_VALUE);
+        ledger.load(() -> start);
+        ledger.save();
+    }
+
+    /** Saves between iterations like the autosave does, so the journal stays at its steady-state size. */
+    @Setup(Level.Iteration)
+    public void compact() throws IOException {
+        ledger.save();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ledger.close();
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long addMoney() {
+        return ledger.add(players[ThreadLocalRandom.current().nextInt(players.length)], 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long addMoneyContended() {
+        return ledger.add(players[ThreadLocalRandom.current().nextInt(players.length)], 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean payContended() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID from = players[random.nextInt(players.length)];
+        UUID to = players[random.nextInt(players.length)];
+        if (from.equals(to)) return false;
+        return ledger.transfer(Transaction.create().debit(from, 1).credit(to, 1));
+    }
+}
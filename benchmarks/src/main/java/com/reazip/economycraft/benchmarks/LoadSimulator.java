@@ -0,0 +1,513 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.reazip.economycraft.DeliveryInbox;
+import com.reazip.economycraft.EconomyConfig;
+import com.reazip.economycraft.EconomyManager;
+import com.reazip.economycraft.PriceRegistry;
+import com.reazip.economycraft.SellCommand;
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.core.Ledger;
+import com.reazip.economycraft.orders.OrderManager;
+import com.reazip.economycraft.orders.OrderRequest;
+import com.reazip.economycraft.shop.ShopListing;
+import com.reazip.economycraft.shop.ShopManager;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.world.SimpleContainer;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Headless load test: synthetic players, one thread each, run a weighted mix of economy operations against
+ * the real ShopManager, OrderManager and DeliveryInbox and the {@link Ledger} behind EconomyManager, all
+ * saving into one data directory in the configured storage format. After a warm-up it reports throughput,
+ * p50/p99 latency and allocation per operation, the allocation rate of the whole JVM and the bytes written.
+ *
+ * <p>Operations follow the command and menu code paths: {@code pay} is /pay, {@code sell} is /sell all with
+ * a restocked inventory, {@code list} and {@code buy} are the auction house, {@code order} and {@code fulfil}
+ * are /orders and {@code claim} empties the delivery inbox. Without a server there are no chat messages, no
+ * daily sell limit and no automatic order matching (which runs on the server thread).
+ *
+ * <pre>
+ * ./gradlew :benchmarks:loadsim -Ploadsim_args="--players 500 --seconds 60 --storage nbt"
+ * </pre>
+ */
+public final class LoadSimulator {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final Item[] ITEMS = {
+            Items.DIAMOND, Items.IRON_INGOT, Items.OAK_LOG, Items.COBBLESTONE, Items.NETHERITE_SWORD, Items.SHULKER_BOX
+    };
+    // Listings and requests players pick from, newest first like the first page of /ah and /orders.
+    private static final int RECENT = 4096;
+
+    enum Op {
+        PAY("pay", 35), SELL("sell", 20), LIST("list", 12), BUY("buy", 10), ORDER("order", 8), FULFIL("fulfil", 7),
+        CLAIM("claim", 8);
+
+        final String key;
+        final int defaultWeight;
+
+        Op(String key, int defaultWeight) {
+            this.key = key;
+            this.defaultWeight = defaultWeight;
+        }
+    }
+
+    record Options(int players, int seconds, int warmupSeconds, long thinkMs, String storage, long startingBalance,
+                   double taxRate, int listings, int orders, Map<Op, Integer> mix, Path dataDir, Path results) {
+
+        static Options parse(String[] args) {
+            Map<String, String> a = new HashMap<>();
+            for (int i = 0; i < args.length; i += 2) {
+                if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+                }
+                a.put(args[i].substring(2), args[i + 1]);
+            }
+            int players = Integer.parseInt(a.getOrDefault("players", "500"));
+            if (players < 2) throw new IllegalArgumentException("--players must be at least 2");
+            Map<Op, Integer> mix = new EnumMap<>(Op.class);
+            for (Op op : Op.values()) mix.put(op, op.defaultWeight);
+            if (a.containsKey("mix")) {
+                mix.replaceAll((op, w) -> 0);
+                for (String part : a.get("mix").split(",")) {
+                    String[] kv = part.split("=");
+                    Op op = Stream.of(Op.values()).filter(o -> o.key.equals(kv[0].trim())).findFirst()
+                            .orElseThrow(() -> new IllegalArgumentException("Unknown operation in --mix: " + kv[0]));
+                    mix.put(op, Integer.parseInt(kv[1].trim()));
+                }
+            }
+            String storage = a.getOrDefault("storage", "json").toLowerCase(Locale.ROOT);
+            if (!storage.equals("json") && !storage.equals("nbt")) {
+                throw new IllegalArgumentException("--storage must be json or nbt");
+            }
+            return new Options(
+                    players,
+                    Integer.parseInt(a.getOrDefault("seconds", "60")),
+                    Integer.parseInt(a.getOrDefault("warmup", "10")),
+                    Long.parseLong(a.getOrDefault("think-ms", "0")),
+                    storage,
+                    Long.parseLong(a.getOrDefault("starting-balance", "10000")),
+                    Double.parseDouble(a.getOrDefault("tax-rate", "0.0")),
+                    Integer.parseInt(a.getOrDefault("listings", String.valueOf(players * 10))),
+                    Integer.parseInt(a.getOrDefault("orders", String.valueOf(players * 4))),
+                    mix,
+                    Path.of(a.getOrDefault("data-dir", "loadsim/config/economycraft/data")).toAbsolutePath(),
+                    a.containsKey("results") ? Path.of(a.get("results")).toAbsolutePath() : null);
+        }
+    }
+
+    private static final class OpStats {
+        final Recorder latency = new Recorder(3);
+        final LongAdder ops = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+
+        void reset() {
+            latency.reset();
+            ops.reset();
+            failed.reset();
+            allocated.reset();
+        }
+    }
+
+    private final Options options;
+    private final UUID[] players;
+    private final int[] cumulativeWeights;
+    private final Map<Op, OpStats> stats = new EnumMap<>(Op.class);
+    private final AtomicIntegerArray recentListings = new AtomicIntegerArray(RECENT);
+    private final AtomicIntegerArray recentOrders = new AtomicIntegerArray(RECENT);
+    private final AtomicLong listingSlot = new AtomicLong();
+    private final AtomicLong orderSlot = new AtomicLong();
+
+    private Ledger ledger;
+    private PriceRegistry prices;
+    private ShopManager shop;
+    private OrderManager orders;
+    private DeliveryInbox deliveries;
+
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+
+    private LoadSimulator(Options options) {
+        this.options = options;
+        this.players = Fixtures.players(options.players(), 23L);
+        this.cumulativeWeights = new int[Op.values().length];
+        int sum = 0;
+        for (Op op : Op.values()) {
+            sum += options.mix().get(op);
+            cumulativeWeights[op.ordinal()] = sum;
+            stats.put(op, new OpStats());
+        }
+        if (sum <= 0) throw new IllegalArgumentException("--mix has no operation with a positive weight");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadSimulator(Options.parse(args)).run();
+        // The vanilla bootstrap leaves non-daemon threads behind.
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        Path dataDir = options.dataDir();
+        if (Files.isDirectory(dataDir)) {
+            try (Stream<Path> files = Files.list(dataDir)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalStateException("Data directory " + dataDir + " is not empty; the simulator starts from an empty economy");
+                }
+            }
+        }
+        Files.createDirectories(dataDir);
+
+        HolderLookup.Provider registries = Fixtures.registries();
+        EconomyConfig.get().storageFormat = options.storage();
+
+        ledger = new Ledger(dataDir, options::startingBalance, EconomyManager.MAX);
+        ledger.load(() -> null);
+        prices = new PriceRegistry(dataDir.getParent());
+        shop = new ShopManager(dataDir, registries, id -> "Player" + id.toString().substring(0, 8), this::categoryOf);
+        orders = new OrderManager(dataDir, registries);
+        deliveries = new DeliveryInbox(dataDir, registries);
+        seed();
+
+        // EconomyManager's autosave: compact the balance journal when it grows, snapshot every five minutes.
+        ScheduledExecutorService autosave = Executors.newSingleThreadScheduledExecutor();
+        autosave.scheduleWithFixedDelay(() -> { if (ledger.needsCompaction()) saveBalances(); }, 30, 30, TimeUnit.SECONDS);
+        autosave.scheduleAtFixedRate(this::saveBalances, 5, 5, TimeUnit.MINUTES);
+
+        System.out.printf("EconomyCraft load simulation: %d players, %d s measured after %d s warm-up, %s storage, think time %d ms%n",
+                options.players(), options.seconds(), options.warmupSeconds(), options.storage(), options.thinkMs());
+        List<Thread> threads = new ArrayList<>(players.length);
+        for (int i = 0; i < players.length; i++) {
+            Thread t = new Thread(new Player(i), "sim-player-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds()));
+        stats.values().forEach(OpStats::reset);
+        long allocStart = THREADS.getTotalThreadAllocatedBytes();
+        long writtenStart = bytesWritten();
+        long start = System.nanoTime();
+        measuring = true;
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.seconds()));
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long allocated = THREADS.getTotalThreadAllocatedBytes() - allocStart;
+        long written = writtenStart < 0 ? -1 : bytesWritten() - writtenStart;
+
+        running = false;
+        for (Thread t : threads) t.join();
+        autosave.shutdown();
+        saveBalances();
+        ledger.close();
+        shop.shutdown();
+        orders.shutdown();
+        deliveries.shutdown();
+
+        report(elapsed, allocated, written, directorySize(dataDir));
+    }
+
+    /** Opens every account and fills the auction house and order list so buyers and sellers find work at once. */
+    private void seed() {
+        SplittableRandom random = new SplittableRandom(29L);
+        for (UUID p : players) ledger.getOrOpen(p);
+        for (int i = 0; i < options.listings(); i++) {
+            list(players[random.nextInt(players.length)], random);
+        }
+        for (int i = 0; i < options.orders(); i++) {
+            order(players[random.nextInt(players.length)], random);
+        }
+        saveBalances();
+    }
+
+    private final class Player implements Runnable {
+        final UUID id;
+        final SplittableRandom random;
+        final SimpleContainer inventory = new SimpleContainer(36);
+        final ItemStack offhand = new ItemStack(Items.TORCH, 32);
+
+        Player(int index) {
+            this.id = players[index];
+            this.random = new SplittableRandom(31L * index + 7);
+            // A mining trip: the held item spread over the inventory between tools and blocks.
+            for (int i = 0; i < 36; i++) {
+                inventory.setItem(i, switch (i % 4) {
+                    case 0, 2 -> new ItemStack(Items.DIAMOND, 64);
+                    case 1 -> new ItemStack(Items.COBBLESTONE, 64);
+                    default -> new ItemStack(Items.IRON_PICKAXE);
+                });
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Op op = pick(random);
+                long allocBefore = THREADS.getCurrentThreadAllocatedBytes();
+                long t0 = System.nanoTime();
+                boolean ok = execute(op);
+                long nanos = System.nanoTime() - t0;
+                long alloc = THREADS.getCurrentThreadAllocatedBytes() - allocBefore;
+                if (measuring) {
+                    OpStats s = stats.get(op);
+                    s.latency.recordValue(nanos);
+                    s.ops.increment();
+                    s.allocated.add(alloc);
+                    if (!ok) s.failed.increment();
+                }
+                if (options.thinkMs() > 0) {
+                    try {
+                        Thread.sleep(random.nextLong(options.thinkMs() * 2 + 1));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        boolean execute(Op op) {
+            return switch (op) {
+                case PAY -> pay();
+                case SELL -> sellAll();
+                case LIST -> list(id, random);
+                case BUY -> buy();
+                case ORDER -> order(id, random);
+                case FULFIL -> fulfil();
+                case CLAIM -> !deliveries.takeAll(id).isEmpty();
+            };
+        }
+
+        /** EconomyManager.pay. */
+        boolean pay() {
+            UUID to = other(random, id);
+            long amount = 1 + random.nextInt(100);
+            return ledger.transfer(Transaction.create().debit(id, amount).credit(to, amount));
+        }
+
+        /** The /sell all confirm path; the inventory is left as is, as if restocked before every sale. */
+        boolean sellAll() {
+            PriceRegistry.ResolvedPrice resolved = prices.resolve(inventory.getItem(0));
+            if (resolved == null || resolved.entry().unitSell() <= 0) return false;
+            int count = SellCommand.countMatchingSellable(inventory, offhand, prices, resolved.key());
+            if (count <= 0) return false;
+            ledger.add(id, resolved.entry().unitSell() * count);
+            return true;
+        }
+
+        /**
+         * ShopManager.buyListing. The listing is taken off the shop before paying: on a server only the server
+         * thread buys, here every player thread does, and a listing must not sell twice.
+         */
+        boolean buy() {
+            ShopListing listing = recent(recentListings, listingSlot, random, shop::getListing);
+            if (listing == null || listing.seller.equals(id)) return false;
+            if (ledger.getOrOpen(id) < listing.price) return false;
+            if (shop.removeListing(listing.id) == null) return false;
+            // Only fails if the balance was spent in the meantime; the listing is then gone, like a cancelled one.
+            if (!ledger.transfer(Transaction.create().debit(id, listing.price).credit(listing.seller, listing.price))) {
+                return false;
+            }
+            deliveries.add(id, listing.item);
+            return true;
+        }
+
+        /** The /orders fulfil button, claiming the request first for the same reason as {@link #buy()}. */
+        boolean fulfil() {
+            OrderRequest request = recent(recentOrders, orderSlot, random, orders::getRequest);
+            if (request == null || request.requester.equals(id)) return false;
+            long cost = request.price;
+            long tax = Math.round(cost * options.taxRate());
+            Long requesterBalance = ledger.get(request.requester);
+            if (requesterBalance == null || requesterBalance < cost) return false;
+            if (orders.removeRequest(request.id) == null) return false;
+            if (!ledger.transfer(Transaction.create().debit(request.requester, cost).credit(id, cost - tax))) {
+                return false;
+            }
+            deliveries.add(request.requester, request.item.copyWithCount(request.amount));
+            return true;
+        }
+    }
+
+    private boolean list(UUID seller, SplittableRandom random) {
+        ShopListing l = new ShopListing();
+        l.seller = seller;
+        l.item = stack(random);
+        l.price = l.item.getCount() * (5L + random.nextInt(200));
+        shop.addListing(l);
+        remember(recentListings, listingSlot, l.id);
+        return true;
+    }
+
+    private boolean order(UUID requester, SplittableRandom random) {
+        OrderRequest r = new OrderRequest();
+        r.requester = requester;
+        r.item = stack(random).copyWithCount(1);
+        r.amount = 1 + random.nextInt(64);
+        r.price = r.amount * (5L + random.nextInt(200));
+        orders.addRequest(r);
+        remember(recentOrders, orderSlot, r.id);
+        return true;
+    }
+
+    private static ItemStack stack(SplittableRandom random) {
+        Item item = ITEMS[random.nextInt(ITEMS.length)];
+        return new ItemStack(item, Math.min(item.getDefaultMaxStackSize(), 1 + random.nextInt(64)));
+    }
+
+    private static void remember(AtomicIntegerArray ring, AtomicLong slot, int id) {
+        ring.set((int) (slot.getAndIncrement() % RECENT), id);
+    }
+
+    /** A live record from the most recently added ones, or null after a few misses (sold or filled already). */
+    private static <T> T recent(AtomicIntegerArray ring, AtomicLong slot, SplittableRandom random,
+                                IntFunction<T> lookup) {
+        int filled = (int) Math.min(slot.get(), RECENT);
+        if (filled == 0) return null;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            T found = lookup.apply(ring.get(random.nextInt(filled)));
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private UUID other(SplittableRandom random, UUID self) {
+        UUID to = players[random.nextInt(players.length)];
+        return to.equals(self) ? players[(random.nextInt(players.length - 1) + 1) % players.length] : to;
+    }
+
+    private Op pick(SplittableRandom random) {
+        int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (Op op : Op.values()) {
+            if (r < cumulativeWeights[op.ordinal()]) return op;
+        }
+        throw new IllegalStateException();
+    }
+
+    /** Same as EconomyManager.categoryOf. */
+    private String categoryOf(ItemStack stack) {
+        PriceRegistry.PriceEntry entry = prices.get(stack);
+        return entry == null ? null : entry.category();
+    }
+
+    private void saveBalances() {
+        try {
+            ledger.save();
+        } catch (IOException e) {
+            System.err.println("Failed to save balances: " + e);
+        }
+    }
+
+    /** Bytes this process handed to write(2) so far (Linux only), or -1. */
+    private static long bytesWritten() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/io"))) {
+                if (line.startsWith("wchar:")) return Long.parseLong(line.substring(6).trim());
+            }
+        } catch (IOException | RuntimeException ignored) {}
+        return -1;
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    private void report(double elapsed, long allocated, long written, long onDisk) throws IOException {
+        JsonObject json = new JsonObject();
+        JsonObject opsJson = new JsonObject();
+        long total = 0;
+        System.out.printf("%n%-8s %10s %10s %8s %10s %10s %10s %12s%n",
+                "op", "count", "ops/s", "failed", "p50 us", "p99 us", "max us", "alloc/op");
+        for (Op op : Op.values()) {
+            OpStats s = stats.get(op);
+            long count = s.ops.sum();
+            if (count == 0) continue;
+            total += count;
+            Histogram h = s.latency.getIntervalHistogram();
+            double p50 = h.getValueAtPercentile(50) / 1e3;
+            double p99 = h.getValueAtPercentile(99) / 1e3;
+            double max = h.getMaxValue() / 1e3;
+            long allocPerOp = s.allocated.sum() / count;
+            System.out.printf("%-8s %10d %10.1f %8d %10.1f %10.1f %10.1f %12s%n",
+                    op.key, count, count / elapsed, s.failed.sum(), p50, p99, max, bytes(allocPerOp));
+
+            JsonObject o = new JsonObject();
+            o.addProperty("count", count);
+            o.addProperty("opsPerSecond", count / elapsed);
+            o.addProperty("failed", s.failed.sum());
+            o.addProperty("p50Micros", p50);
+            o.addProperty("p99Micros", p99);
+            o.addProperty("maxMicros", max);
+            o.addProperty("allocatedBytesPerOp", allocPerOp);
+            opsJson.add(op.key, o);
+        }
+        System.out.printf("%-8s %10d %10.1f%n%n", "total", total, total / elapsed);
+        System.out.printf("allocation rate: %s/s (all threads)%n", bytes((long) (allocated / elapsed)));
+        System.out.printf("written:         %s (%s/s)%s%n", written < 0 ? "n/a" : bytes(written),
+                written < 0 ? "n/a" : bytes((long) (written / elapsed)), written < 0 ? ", needs /proc/self/io" : "");
+        System.out.printf("data directory:  %s on disk in %s%n", bytes(onDisk), options.dataDir());
+        System.out.printf("order saves:     %d requested, %d written%n", orders.savesRequested(), orders.savesWritten());
+
+        if (options.results() == null) return;
+        JsonObject opts = new JsonObject();
+        opts.addProperty("players", options.players());
+        opts.addProperty("warmupSeconds", options.warmupSeconds());
+        opts.addProperty("thinkMs", options.thinkMs());
+        opts.addProperty("storage", options.storage());
+        opts.addProperty("startingBalance", options.startingBalance());
+        opts.addProperty("taxRate", options.taxRate());
+        opts.addProperty("listings", options.listings());
+        opts.addProperty("orders", options.orders());
+        JsonObject mix = new JsonObject();
+        options.mix().forEach((op, weight) -> mix.addProperty(op.key, weight));
+        opts.add("mix", mix);
+        json.add("options", opts);
+        json.addProperty("seconds", elapsed);
+        json.add("operations", opsJson);
+        json.addProperty("allocatedBytesPerSecond", (long) (allocated / elapsed));
+        json.addProperty("bytesWritten", written);
+        json.addProperty("dataDirectoryBytes", onDisk);
+        Files.createDirectories(options.results().getParent());
+        Files.writeString(options.results(), GSON.toJson(json));
+        System.out.println("results: " + options.results());
+    }
+
+    private static String bytes(long n) {
+        if (n < 1024) return n + " B";
+        if (n < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", n / 1024.0);
+        if (n < 1024L * 1024 * 1024) return String.format(Locale.ROOT, "%.1f MiB", n / (1024.0 * 1024));
+        return String.format(Locale.ROOT, "%.2f GiB", n / (1024.0 * 1024 * 1024));
+    }
+}
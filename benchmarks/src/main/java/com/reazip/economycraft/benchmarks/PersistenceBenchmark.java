@@ -0,0 +1,169 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.reazip.economycraft.data.AtomicFiles;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
+import com.reazip.economycraft.data.StreamingJson;
+import com.reazip.economycraft.orders.OrderRequest;
+import com.reazip.economycraft.shop.ShopListing;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.RegistryOps;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.Enchantments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and load of shop.json/orders.json against shop.dat/orders.dat at 1k, 10k and 100k records, using the
+ * same record codecs and file layouts as ShopManager and OrderManager. File sizes are printed at the end of
+ * each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4G")
+public class PersistenceBenchmark {
+    private static final Gson GSON = new Gson();
+    private static final Item[] ITEMS = {
+            Items.DIAMOND, Items.IRON_INGOT, Items.OAK_LOG, Items.NETHERITE_SWORD, Items.ENCHANTED_BOOK, Items.SHULKER_BOX
+    };
+
+    @Param({"shop", "orders"})
+    public String kind;
+
+    @Param({"json", "nbt"})
+    public String format;
+
+    @Param({"1000", "10000", "100000"})
+    public int records;
+
+    private HolderLookup.Provider registries;
+    private RegistryOps<Tag> nbtOps;
+    private Path dir;
+    private Path file;
+    private List<ShopListing> listings;
+    private List<OrderRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        registries = Fixtures.registries();
+        nbtOps = NbtStacks.ops(registries);
+        dir = Fixtures.tempDir("persistence");
+        file = dir.resolve(kind + (format.equals("nbt") ? ".dat" : ".json"));
+
+        UUID[] players = Fixtures.players(Math.max(1, records / 20), 11L);
+        Random random = new Random(11L);
+        listings = new ArrayList<>(records);
+        requests = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            ItemStack stack = stack(random, i);
+            ShopListing l = new ShopListing();
+            l.id = i + 1;
+            l.seller = players[random.nextInt(players.length)];
+            l.item = stack;
+            l.price = 1 + random.nextInt(100_000);
+            listings.add(l);
+
+            OrderRequest r = new OrderRequest();
+            r.id = i + 1;
+            r.requester = players[random.nextInt(players.length)];
+            r.item = stack.copyWithCount(1);
+            r.amount = stack.getCount();
+            r.price = l.price;
+            requests.add(r);
+        }
+        save();
+    }
+
+    /** Mostly plain stacks, with some renamed and enchanted ones to carry real component data. */
+    private ItemStack stack(Random random, int i) {
+        Item item = ITEMS[random.nextInt(ITEMS.length)];
+        ItemStack stack = new ItemStack(item, Math.min(item.getDefaultMaxStackSize(), 1 + random.nextInt(64)));
+        if (i % 10 == 0) stack.set(DataComponents.CUSTOM_NAME, Component.literal("Listing " + i));
+        if (i % 7 == 0) {
+            stack.enchant(registries.lookupOrThrow(Registries.ENCHANTMENT).getOrThrow(Enchantments.UNBREAKING), 3);
+        }
+        return stack;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n[%s %s %d records] %d bytes%n", kind, format, records, Files.size(file));
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        boolean shop = kind.equals("shop");
+        if (format.equals("nbt")) {
+            if (shop) {
+                NbtRecordFile.write(file, records + 1, listings, (l, out) -> l.write(out, nbtOps));
+            } else {
+                NbtRecordFile.write(file, records + 1, requests, (r, out) -> r.write(out, nbtOps));
+            }
+            return file;
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("nextId", records + 1);
+        JsonArray arr = new JsonArray();
+        if (shop) {
+            for (ShopListing l : listings) arr.add(l.save(registries));
+        } else {
+            for (OrderRequest r : requests) arr.add(r.save(registries));
+        }
+        root.add(shop ? "listings" : "requests", arr);
+        AtomicFiles.writeString(file, GSON.toJson(root));
+        return file;
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        boolean shop = kind.equals("shop");
+        if (format.equals("nbt")) {
+            return shop
+                    ? NbtRecordFile.read(file, in -> ShopListing.read(in, nbtOps)).records().size()
+                    : NbtRecordFile.read(file, in -> OrderRequest.read(in, nbtOps)).records().size();
+        }
+        boolean parallel = StreamingJson.worthParallel(file);
+        int[] count = {0};
+        StreamingJson.readObject(file, (name, in) -> {
+            switch (name) {
+                case "listings" -> count[0] += StreamingJson.readArray(in, o -> ShopListing.load(o, registries), parallel).size();
+                case "requests" -> count[0] += StreamingJson.readArray(in, o -> OrderRequest.load(o, registries), parallel).size();
+                default -> in.skipValue();
+            }
+        });
+        return count[0];
+    }
+}
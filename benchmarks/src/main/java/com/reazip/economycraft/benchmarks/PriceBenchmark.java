@@ -0,0 +1,115 @@
+package com.reazip.economycraft.benchmarks;
+
+import com.reazip.economycraft.PriceRegistry;
+import com.reazip.economycraft.SellCommand;
+import com.reazip.economycraft.util.IdentifierCompat;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.world.SimpleContainer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.alchemy.PotionContents;
+import net.minecraft.world.item.alchemy.Potions;
+import net.minecraft.world.item.enchantment.EnchantmentHelper;
+import net.minecraft.world.item.enchantment.EnchantmentInstance;
+import net.minecraft.world.item.enchantment.Enchantments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PriceRegistry.resolve for the three cache paths (plain item, potion, enchanted book), a full price table
+ * reload, and the {@code /sell all} scan over a full inventory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceBenchmark {
+    private Path dir;
+    private PriceRegistry prices;
+    private ItemStack plain;
+    private ItemStack potion;
+    private ItemStack book;
+    private SimpleContainer inventory;
+    private ItemStack offhand;
+    private IdentifierCompat.Id sellKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HolderLookup.Provider registries = Fixtures.registries();
+        dir = Fixtures.tempDir("prices");
+        prices = new PriceRegistry(dir);
+
+        plain = new ItemStack(Items.DIAMOND, 64);
+        potion = PotionContents.createItemStack(Items.POTION, Potions.SWIFTNESS);
+        book = EnchantmentHelper.createBook(new EnchantmentInstance(
+                registries.lookupOrThrow(Registries.ENCHANTMENT).getOrThrow(Enchantments.SHARPNESS), 3));
+
+        // A typical mining trip: the sold item spread over the inventory between tools, blocks and potions.
+        inventory = new SimpleContainer(36);
+        for (int i = 0; i < 36; i++) {
+            inventory.setItem(i, switch (i % 6) {
+                case 0, 3 -> new ItemStack(Items.DIAMOND, 64);
+                case 1 -> new ItemStack(Items.COBBLESTONE, 64);
+                case 2 -> new ItemStack(Items.IRON_PICKAXE);
+                case 4 -> potion.copy();
+                default -> i % 12 == 5 ? book.copy() : ItemStack.EMPTY;
+            });
+        }
+        offhand = new ItemStack(Items.TORCH, 32);
+        PriceRegistry.ResolvedPrice resolved = prices.resolve(plain);
+        if (resolved == null) throw new IllegalStateException("No price for " + plain + " in the bundled prices.json");
+        sellKey = resolved.key();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public PriceRegistry.ResolvedPrice resolvePlain() {
+        return prices.resolve(plain);
+    }
+
+    @Benchmark
+    public PriceRegistry.ResolvedPrice resolvePotion() {
+        return prices.resolve(potion);
+    }
+
+    @Benchmark
+    public PriceRegistry.ResolvedPrice resolveEnchantedBook() {
+        return prices.resolve(book);
+    }
+
+    @Benchmark
+    public int sellAllScan() {
+        return SellCommand.countMatchingSellable(inventory, offhand, prices, sellKey);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public PriceRegistry reload() {
+        prices.reload();
+        return prices;
+    }
+}
@@ -0,0 +1,368 @@
+package com.reazip.economycraft;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.logging.LogUtils;
+import com.mojang.serialization.JsonOps;
+import com.reazip.economycraft.core.PendingItems;
+import com.reazip.economycraft.data.AtomicFiles;
+import com.reazip.economycraft.data.BackgroundWriter;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
+import com.reazip.economycraft.data.StoreFiles;
+import com.reazip.economycraft.data.StreamingJson;
+import com.reazip.economycraft.jfr.SaveEvent;
+import com.reazip.economycraft.util.ItemKey;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.RegistryOps;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Items waiting to be claimed, for every source (shop purchases, filled orders, server shop overflow), kept in
+ * {@link PendingItems} and saved to the deliveries file. Changes only mark the player; the writer copies the
+ * inboxes that changed once per save window, so a delivery costs no copy. Safe to call from any thread.
+ */
+public class DeliveryInbox {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new Gson();
+    private static final long SAVE_DELAY_MS = 1000L;
+
+    private static final PendingItems.Stacks<ItemKey, ItemStack> STACKS = new PendingItems.Stacks<>() {
+        @Override public ItemKey kind(ItemStack stack) { return ItemKey.of(stack); }
+        @Override public int count(ItemStack stack) { return stack.getCount(); }
+        @Override public int maxCount(ItemStack stack) { return stack.getMaxStackSize(); }
+        @Override public ItemStack withCount(ItemStack stack, int count) { return stack.copyWithCount(count); }
+    };
+
+    private final HolderLookup.Provider registries;
+    // The file of the configured storage format, and the other format's file to convert from.
+    private final Path file;
+    private final Path otherFile;
+    private final boolean nbt;
+    private final PendingItems<ItemKey, ItemStack> pending = new PendingItems<>(STACKS);
+    // Detached copies per player, guarded by saveLock; a new list instance marks that player dirty for the encoder.
+    private final Map<UUID, List<ItemStack>> snapshots = new HashMap<>();
+    private final Object saveLock = new Object();
+    // Submissions only say that something changed; the state is captured when the write runs.
+    private final BackgroundWriter<Boolean> writer;
+    // Encoded JSON array or binary record (per storage format) reused while a player's snapshot list is unchanged;
+    // writer thread only.
+    private Map<UUID, Encoded<?>> encoded = new HashMap<>();
+
+    private record Encoded<E>(List<ItemStack> source, E encoded) {}
+    private record PlayerItems(UUID player, List<ItemStack> stacks) {}
+
+    DeliveryInbox(MinecraftServer server) {
+        this(server.getFile("config/economycraft/data"), server.registryAccess());
+    }
+
+    /** Keeps the delivery files in {@code dataDir}; used without a server by the load simulator. */
+    public DeliveryInbox(Path dataDir, HolderLookup.Provider registries) {
+        this.registries = registries;
+        this.nbt = EconomyConfig.get().nbtStorage();
+        this.file = dataDir.resolve(nbt ? "deliveries.dat" : "deliveries.json");
+        this.otherFile = dataDir.resolve(nbt ? "deliveries.json" : "deliveries.dat");
+        BackgroundWriter.Sink<Map<UUID, List<ItemStack>>> sink = EconomyMetrics.timed(
+                SaveEvent.recorded("deliveries", this::write, Map::size),
+                EconomyMetrics.DELIVERY_SAVE_TIME, EconomyMetrics.DELIVERY_SAVE_FAILURES);
+        this.writer = new BackgroundWriter<>("Deliveries", SAVE_DELAY_MS, ignored -> sink.write(capture()));
+    }
+
+    // --- Queries ---
+
+    public boolean has(UUID player) {
+        return stackCount(player) > 0;
+    }
+
+    public int stackCount(UUID player) {
+        return pending.stackCount(player);
+    }
+
+    public long itemCount(UUID player) {
+        return pending.itemCount(player);
+    }
+
+    /** Copies of the player's pending stacks, grouped by item. */
+    public List<ItemStack> view(UUID player) {
+        return pending.view(player);
+    }
+
+    // --- Changes ---
+
+    public void add(UUID player, ItemStack stack) {
+        if (stack.isEmpty()) return;
+        addAll(player, List.of(stack));
+    }
+
+    /** Adds several stacks with one save. */
+    public void addAll(UUID player, Collection<ItemStack> stacks) {
+        pending.addAll(player, stacks);
+        save();
+    }
+
+    /**
+     * Removes the stack shown at {@code index} of {@link #view(UUID)}, provided it still equals {@code expected};
+     * returns EMPTY if the inbox changed in the meantime.
+     */
+    public ItemStack take(UUID player, int index, ItemStack expected) {
+        ItemStack taken = pending.take(player, index, expected);
+        if (taken == null) return ItemStack.EMPTY;
+        save();
+        return taken;
+    }
+
+    /** Removes and returns everything the player has pending, with one save. */
+    public List<ItemStack> takeAll(UUID player) {
+        List<ItemStack> out = pending.takeAll(player);
+        if (!out.isEmpty()) save();
+        return out;
+    }
+
+    /** Outcome of {@link #claimInto}: what moved into the inventory and what is still waiting. */
+    public record ClaimResult(long itemsClaimed, long itemsLeft) {}
+
+    /**
+     * Moves as much of the player's inbox into {@code inventory} as fits, in one pass with one save. What fits
+     * is worked out from free slots and room on matching stacks before anything is removed, so the inbox and
+     * the inventory never disagree. Call on the server thread.
+     */
+    public ClaimResult claimInto(UUID player, Inventory inventory) {
+        int free = 0;
+        Map<ItemKey, Integer> room = new HashMap<>();
+        for (int i = 0; i < Inventory.INVENTORY_SIZE; i++) {
+            ItemStack s = inventory.getItem(i);
+            if (s.isEmpty()) {
+                free++;
+            } else if (s.isStackable() && s.getCount() < s.getMaxStackSize()) {
+                room.merge(ItemKey.of(s), s.getMaxStackSize() - s.getCount(), Integer::sum);
+            }
+        }
+
+        PendingItems.Claim<ItemStack> claim = pending.claim(player, room, free);
+        List<ItemStack> taken = claim.taken();
+        long left = claim.itemsLeft();
+        if (taken.isEmpty()) return new ClaimResult(0, left);
+
+        long claimed = 0;
+        List<ItemStack> returned = new ArrayList<>();
+        for (ItemStack s : taken) {
+            int count = s.getCount();
+            inventory.add(s);
+            claimed += count - s.getCount();
+            if (!s.isEmpty()) returned.add(s);
+        }
+        if (!returned.isEmpty()) {
+            // Only if the inventory changed under us; the leftovers go back instead of being lost.
+            addAll(player, returned);
+            left = itemCount(player);
+        } else {
+            save();
+        }
+        return new ClaimResult(claimed, left);
+    }
+
+    /**
+     * Copies the inboxes changed since the last capture and returns every player's copy; runs when a write
+     * does, so each changed inbox is copied once per save window.
+     */
+    private Map<UUID, List<ItemStack>> capture() {
+        synchronized (saveLock) {
+            pending.drainChanged((player, copy) -> {
+                if (copy == null) {
+                    snapshots.remove(player);
+                } else {
+                    snapshots.put(player, copy);
+                }
+            });
+            return Map.copyOf(snapshots);
+        }
+    }
+
+    // --- File IO ---
+
+    /**
+     * Loads the deliveries file of the configured storage format, converting from the other format's file if only
+     * that one exists. When neither exists yet, the deliveries that older versions kept in shop.json and orders.json
+     * are imported instead and written out straight away. Returns true only when imported deliveries are on disk,
+     * so shop.json and orders.json can be rewritten without them.
+     */
+    boolean load(Map<UUID, List<ItemStack>> legacyShop, Map<UUID, List<ItemStack>> legacyOrders) {
+        pending.clear();
+        synchronized (saveLock) {
+            snapshots.clear();
+        }
+        Path source = StoreFiles.source(file, otherFile);
+        if (source == null) {
+            legacyOrders.forEach(this::addAll);
+            legacyShop.forEach(this::addAll);
+            // Written even when empty, so the next start takes the normal load path instead of migrating again.
+            save();
+            try {
+                writer.flushOrThrow();
+            } catch (Exception e) {
+                LOGGER.error("[EconomyCraft] Failed to write {}, keeping the deliveries in shop and orders data", file, e);
+                return false;
+            }
+            if (pending.players() > 0) {
+                LOGGER.info("[EconomyCraft] Migrated deliveries for {} players to {}", pending.players(), file.getFileName());
+            }
+            return !legacyShop.isEmpty() || !legacyOrders.isEmpty();
+        }
+        long start = System.nanoTime();
+        long[] items = {0};
+        StreamingJson.EntryHandler<ItemStack> sink = (key, list) -> {
+            if (list.isEmpty()) return;
+            UUID id = UUID.fromString(key);
+            pending.addAll(id, list);
+            items[0] += pending.itemCount(id);
+        };
+        try {
+            if (source.getFileName().toString().endsWith(".dat")) {
+                var ops = NbtStacks.ops(registries);
+                var contents = NbtRecordFile.read(source, in -> readPlayer(in, ops));
+                for (PlayerItems p : contents.records()) sink.entry(p.player().toString(), p.stacks());
+            } else {
+                loadJson(source, sink);
+            }
+            LOGGER.info("[EconomyCraft] Loaded deliveries for {} players ({} items) from {} in {} ms",
+                    pending.players(), items[0], source.getFileName(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load {}", source, e);
+            return false;
+        }
+        if (source == otherFile) convert();
+        return false;
+    }
+
+    /** Writes the data loaded from the other format's file and retires that file once the new one is on disk. */
+    private void convert() {
+        save();
+        try {
+            writer.flushOrThrow();
+            StoreFiles.retire(otherFile);
+            LOGGER.info("[EconomyCraft] Converted {} to {}", otherFile.getFileName(), file.getFileName());
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to convert {} to {}", otherFile.getFileName(), file.getFileName(), e);
+        }
+    }
+
+    private void loadJson(Path source, StreamingJson.EntryHandler<ItemStack> sink) throws IOException {
+        boolean parallel = StreamingJson.worthParallel(source);
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
+        StreamingJson.readObject(source, (name, in) -> {
+            if (!name.equals("deliveries")) {
+                in.skipValue();
+                return;
+            }
+            StreamingJson.readMapOfArrays(in,
+                    o -> ItemStack.CODEC.parse(ops, o.get("stack")).result().filter(s -> !s.isEmpty()).orElse(null),
+                    parallel, sink);
+        });
+    }
+
+    private static PlayerItems readPlayer(DataInput in, RegistryOps<Tag> ops) throws IOException {
+        UUID player = NbtRecordFile.readUuid(in);
+        int count = in.readInt();
+        List<ItemStack> stacks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ItemStack stack = NbtStacks.read(ops, in);
+            if (!stack.isEmpty()) stacks.add(stack);
+        }
+        return player == null ? null : new PlayerItems(player, stacks);
+    }
+
+    /** Schedules a write; the inboxes are captured when it runs, so it always writes the latest state. */
+    public void save() {
+        writer.submit(Boolean.TRUE);
+    }
+
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    private void write(Map<UUID, List<ItemStack>> snapshot) throws IOException {
+        if (nbt) {
+            writeBinary(snapshot);
+            return;
+        }
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
+        Map<UUID, Encoded<?>> cache = new HashMap<>();
+        JsonObject dObj = new JsonObject();
+        for (Map.Entry<UUID, List<ItemStack>> e : snapshot.entrySet()) {
+            Encoded<?> enc = encoded.get(e.getKey());
+            if (enc == null || enc.source() != e.getValue()) {
+                enc = new Encoded<>(e.getValue(), encodeJson(e.getValue(), ops));
+            }
+            cache.put(e.getKey(), enc);
+            dObj.add(e.getKey().toString(), (JsonArray) enc.encoded());
+        }
+        encoded = cache;
+
+        JsonObject root = new JsonObject();
+        root.add("deliveries", dObj);
+        Files.createDirectories(file.getParent());
+        AtomicFiles.writeString(file, GSON.toJson(root));
+    }
+
+    /**
+     * The {@code deliveries} section in the layout of deliveries.json, which is also how older versions kept them
+     * in shop.json and orders.json.
+     */
+    public static JsonObject toJson(Map<UUID, List<ItemStack>> deliveries, HolderLookup.Provider registries) {
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
+        JsonObject dObj = new JsonObject();
+        deliveries.forEach((player, stacks) -> dObj.add(player.toString(), encodeJson(stacks, ops)));
+        return dObj;
+    }
+
+    private static JsonArray encodeJson(List<ItemStack> stacks, RegistryOps<JsonElement> ops) {
+        JsonArray arr = new JsonArray();
+        for (ItemStack s : stacks) {
+            JsonObject o = new JsonObject();
+            o.add("stack", ItemStack.CODEC.encodeStart(ops, s).result().orElse(new JsonObject()));
+            arr.add(o);
+        }
+        return arr;
+    }
+
+    private void writeBinary(Map<UUID, List<ItemStack>> snapshot) throws IOException {
+        var ops = NbtStacks.ops(registries);
+        Map<UUID, Encoded<?>> cache = new HashMap<>();
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(scratch);
+        List<byte[]> records = new ArrayList<>(snapshot.size());
+        for (Map.Entry<UUID, List<ItemStack>> e : snapshot.entrySet()) {
+            Encoded<?> enc = encoded.get(e.getKey());
+            if (enc == null || enc.source() != e.getValue()) {
+                scratch.reset();
+                NbtRecordFile.writeUuid(e.getKey(), out);
+                out.writeInt(e.getValue().size());
+                for (ItemStack s : e.getValue()) NbtStacks.write(s, ops, out);
+                enc = new Encoded<>(e.getValue(), scratch.toByteArray());
+            }
+            cache.put(e.getKey(), enc);
+            records.add((byte[]) enc.encoded());
+        }
+        encoded = cache;
+        NbtRecordFile.write(file, 0L, records, (bytes, o) -> o.write(bytes));
+    }
+}
@@ -1,11 +1,16 @@
 package com.reazip.economycraft;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.LongArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import com.reazip.economycraft.metrics.Counter;
+import com.reazip.economycraft.metrics.Gauge;
+import com.reazip.economycraft.metrics.Histogram;
+import com.reazip.economycraft.metrics.Metric;
 import com.reazip.economycraft.util.IdentityCompat;
 import com.reazip.economycraft.util.IdentifierCompat;
 import com.reazip.economycraft.util.PermissionCompat;
@@ -22,6 +27,7 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import com.reazip.economycraft.shop.ShopManager;
 import com.reazip.economycraft.shop.ShopListing;
+import com.reazip.economycraft.shop.ListingQuery;
 import com.reazip.economycraft.shop.ShopUi;
 import com.reazip.economycraft.shop.ServerShopUi;
 import com.reazip.economycraft.orders.OrderManager;
@@ -114,6 +120,7 @@ public final class EconomyCommands {
         root.then(buildAH());
         root.then(buildOrders());
         root.then(reload);
+        root.then(buildStats());
 
         root.then(addMoney);
         root.then(setMoney);
@@ -161,7 +168,20 @@ public final class EconomyCommands {
     private static LiteralArgumentBuilder<CommandSourceStack> buildBalance() {
         return literal("bal")
                 .then(literal("top")
-                        .executes(ctx -> balTop(ctx.getSource())))
+                        .executes(ctx -> balTop(ctx.getSource(), 1))
+                        .then(argument("page", IntegerArgumentType.integer(1))
+                                .executes(ctx -> balTop(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "page")))))
+                .then(literal("rank")
+                        .executes(ctx -> balRank(IdentityCompat.of(ctx.getSource().getPlayerOrException()), ctx.getSource()))
+                        .then(argument("target", GameProfileArgument.gameProfile())
+                                .executes(ctx -> {
+                                    var refs = IdentityCompat.getArgAsPlayerRefs(ctx, "target");
+                                    if (refs.size() != 1) {
+                                        ctx.getSource().sendFailure(Component.literal("Geef precies een speler op.").withStyle(ChatFormatting.RED));
+                                        return 0;
+                                    }
+                                    return balRank(refs.iterator().next(), ctx.getSource());
+                                })))
                 .executes(ctx -> showBalance(IdentityCompat.of(ctx.getSource().getPlayerOrException()), ctx.getSource()))
                 .then(argument("target", GameProfileArgument.gameProfile())
                         .executes(ctx -> {
@@ -220,21 +240,28 @@ public final class EconomyCommands {
 
         return 1;
     }
-    private static int balTop(CommandSourceStack source) {
+    private static final int BAL_TOP_PAGE_SIZE = 10;
+
+    private static int balTop(CommandSourceStack source, int page) {
     EconomyManager manager = EconomyCraft.getManager(source.getServer());
-    Map<UUID, Long> balances = manager.getBalances();
+    Leaderboard leaderboard = manager.getLeaderboard();
+    int total = leaderboard.size();
 
-    if (balances == null || balances.isEmpty()) {
+    if (total == 0) {
         source.sendFailure(Component.literal("Geen saldo gevonden").withStyle(ChatFormatting.RED));
         return 0;
     }
-        
-    var topEntries = balances.entrySet().stream()
-            .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
-            .limit(10)
-            .toList();
 
-    MutableComponent message = Component.literal("--- Top 10 Saldo's ---")
+    int pages = (total + BAL_TOP_PAGE_SIZE - 1) / BAL_TOP_PAGE_SIZE;
+    if (page > pages) {
+        source.sendFailure(Component.literal("Pagina " + page + " bestaat niet (max " + pages + ").").withStyle(ChatFormatting.RED));
+        return 0;
+    }
+
+    int offset = (page - 1) * BAL_TOP_PAGE_SIZE;
+    var topEntries = leaderboard.page(offset, BAL_TOP_PAGE_SIZE);
+
+    MutableComponent message = Component.literal("--- Top Saldo's (pagina " + page + "/" + pages + ") ---")
         .withStyle(ChatFormatting.GOLD)
         .withStyle(ChatFormatting.BOLD);
     
@@ -246,7 +273,7 @@ public final class EconomyCommands {
         String name = manager.getBestName(id);
         if (name == null || name.isBlank()) name = "Onbekend (" + id.toString().substring(0, 8) + ")";
 
-        message.append(Component.literal("\n" + (i + 1) + ". ")
+        message.append(Component.literal("\n" + (offset + i + 1) + ". ")
                 .withStyle(ChatFormatting.YELLOW))
                .append(Component.literal(name + ": ")
                 .withStyle(ChatFormatting.GRAY))
@@ -258,6 +285,25 @@ public final class EconomyCommands {
     return topEntries.size();
 }
 
+    private static int balRank(IdentityCompat.PlayerRef target, CommandSourceStack source) {
+        EconomyManager manager = EconomyCraft.getManager(source.getServer());
+        Leaderboard leaderboard = manager.getLeaderboard();
+        int rank = leaderboard.rank(target.id());
+        if (rank < 0) {
+            source.sendFailure(Component.literal("Onbekende speler!").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        boolean self = source.getEntity() instanceof ServerPlayer sp && sp.getUUID().equals(target.id());
+        String prefix = self ? "Jouw positie: " : target.name() + " staat op: ";
+        Component msg = Component.literal(prefix)
+                .withStyle(ChatFormatting.GOLD)
+                .append(Component.literal("#" + rank).withStyle(ChatFormatting.YELLOW, ChatFormatting.BOLD))
+                .append(Component.literal(" van " + leaderboard.size()).withStyle(ChatFormatting.GRAY));
+        source.sendSuccess(() -> msg, false);
+        return rank;
+    }
+
     private static @NotNull ArrayList<Map.Entry<UUID, Long>> getSortedEntries(Map<UUID, Long> balances, EconomyManager manager) {
         var sorted = new ArrayList<>(balances.entrySet());
         sorted.sort((a, b) -> {
@@ -371,6 +417,9 @@ public final class EconomyCommands {
     try {
         EconomyManager manager = EconomyCraft.getManager(source.getServer());
         manager.getPrices().load(); 
+        manager.loadUserCache();
+        manager.getShop().getRenderCache().clear();
+        manager.getShop().reindexSearch();
         
         Component msg = Component.literal("Economy prijzen succesvol herladen")
                 .withStyle(ChatFormatting.GREEN);
@@ -385,6 +434,36 @@ public final class EconomyCommands {
        }
     }
 
+    private static LiteralArgumentBuilder<CommandSourceStack> buildStats() {
+        return literal("stats")
+                .requires(PermissionCompat.gamemaster())
+                .executes(ctx -> showStats(ctx.getSource()));
+    }
+
+    private static int showStats(CommandSourceStack source) {
+        String prefix = "economycraft_";
+        MutableComponent msg = Component.literal("--- EconomyCraft statistieken ---").withStyle(ChatFormatting.GOLD);
+        for (Metric m : EconomyMetrics.REGISTRY.metrics()) {
+            String name = m.name().startsWith(prefix) ? m.name().substring(prefix.length()) : m.name();
+            String value = switch (m) {
+                case Counter c -> String.valueOf(c.get());
+                case Gauge g -> String.valueOf(g.get());
+                // Timers record nanoseconds with a unit of 1e-9, so value * unit * 1000 is milliseconds.
+                case Histogram h -> h.count() + "x, p50 " + formatMillis(h.quantile(0.5), h.unit())
+                        + ", p99 " + formatMillis(h.quantile(0.99), h.unit())
+                        + ", max " + formatMillis(h.max(), h.unit());
+            };
+            msg.append(Component.literal("\n" + name + ": ").withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(value).withStyle(ChatFormatting.WHITE));
+        }
+        source.sendSuccess(() -> msg, false);
+        return 1;
+    }
+
+    private static String formatMillis(long value, double unit) {
+        return String.format(Locale.ROOT, "%.2f ms", value * unit * 1000);
+    }
+
     private static LiteralArgumentBuilder<CommandSourceStack> buildAddMoney() {
         return literal("addmoney").requires(PermissionCompat.gamemaster())
                 .then(argument("targets", GameProfileArgument.gameProfile())
@@ -721,6 +800,11 @@ public final class EconomyCommands {
                         .then(argument("price", LongArgumentType.longArg(1, EconomyManager.MAX))
                                 .executes(ctx -> listItemAH(ctx.getSource().getPlayerOrException(),
                                         LongArgumentType.getLong(ctx, "price"),
+                                        ctx.getSource()))))
+                .then(literal("search")
+                        .then(argument("query", StringArgumentType.greedyString())
+                                .executes(ctx -> searchAH(ctx.getSource().getPlayerOrException(),
+                                        StringArgumentType.getString(ctx, "query"),
                                         ctx.getSource()))));
     }
 
@@ -735,6 +819,25 @@ public final class EconomyCommands {
         }
     }
 
+    private static int searchAH(ServerPlayer player, String raw, CommandSourceStack source) {
+        EconomyManager manager = EconomyCraft.getManager(source.getServer());
+        ListingQuery query;
+        try {
+            query = ListingQuery.parse(raw, manager.getNames()::resolve);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal(e.getMessage()).withStyle(ChatFormatting.RED));
+            return 0;
+        }
+
+        ShopManager shop = manager.getShop();
+        if (shop.getSearch().find(query).isEmpty()) {
+            source.sendFailure(Component.literal("Geen resultaten voor '" + query.text() + "'.").withStyle(ChatFormatting.RED));
+            return 0;
+        }
+        ShopUi.open(player, shop, query);
+        return 1;
+    }
+
     private static int listItemAH(ServerPlayer player, long price, CommandSourceStack source) {
         if (player.getMainHandItem().isEmpty()) {
             source.sendFailure(Component.literal("Houd het item in uw hand.").withStyle(ChatFormatting.RED));
@@ -900,21 +1003,20 @@ public final class EconomyCommands {
     return id.toString().substring(0, 8); 
 }
 
+    private static final int MAX_NAME_SUGGESTIONS = 50;
+
     private static CompletableFuture<Suggestions> suggestPlayers(CommandSourceStack source, SuggestionsBuilder builder) {
         var server = source.getServer();
         var manager = EconomyCraft.getManager(server);
-        Set<String> suggestions = new java.util.HashSet<>();
+        String prefix = builder.getRemainingLowerCase();
+        Set<String> suggestions = new java.util.LinkedHashSet<>();
 
         for (ServerPlayer p : server.getPlayerList().getPlayers()) {
-            suggestions.add(IdentityCompat.of(p).name());
+            String name = IdentityCompat.of(p).name();
+            if (name.toLowerCase(Locale.ROOT).startsWith(prefix)) suggestions.add(name);
         }
 
-        for (UUID id : manager.getBalances().keySet()) {
-            String name = manager.getBestName(id);
-            if (name != null && !name.isBlank()) {
-                suggestions.add(name);
-            }
-        }
+        suggestions.addAll(manager.getNames().complete(prefix, MAX_NAME_SUGGESTIONS, manager.getBalances()::containsKey));
 
         suggestions.forEach(builder::suggest);
         return builder.buildFuture();
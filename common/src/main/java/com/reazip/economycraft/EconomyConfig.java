@@ -42,6 +42,24 @@ public class EconomyConfig {
     @SerializedName("server_shop_enabled")
     public boolean serverShopEnabled = true;
 
+    @SerializedName("orders_save_window_ms")
+    public long ordersSaveWindowMs = 2000;
+
+    @SerializedName("order_matching_enabled")
+    public boolean orderMatchingEnabled = true;
+
+    @SerializedName("storage_format")
+    public String storageFormat = "json";
+
+    @SerializedName("metrics_file")
+    public String metricsFile = "";
+
+    @SerializedName("metrics_file_interval_seconds")
+    public int metricsFileIntervalSeconds = 15;
+
+    @SerializedName("metrics_port")
+    public int metricsPort = 0;
+
     private static EconomyConfig INSTANCE = new EconomyConfig();
     private static Path file;
 
@@ -49,6 +67,11 @@ public class EconomyConfig {
         return INSTANCE;
     }
 
+    /** Whether shop, order and delivery data use the compressed binary files instead of JSON. */
+    public boolean nbtStorage() {
+        return "nbt".equalsIgnoreCase(storageFormat);
+    }
+
     public static void load(MinecraftServer server) {
         Path dir = server != null ? server.getFile("config/economycraft") : Path.of("config/economycraft");
         try { Files.createDirectories(dir); } catch (IOException ignored) {}
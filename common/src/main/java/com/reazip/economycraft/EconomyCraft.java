@@ -1,6 +1,7 @@
 package com.reazip.economycraft;
 
 import com.reazip.economycraft.util.ChatCompat;
+import com.reazip.economycraft.util.IdentityCompat;
 import dev.architectury.event.events.common.CommandRegistrationEvent;
 import dev.architectury.event.events.common.LifecycleEvent;
 import dev.architectury.event.events.common.PlayerEvent;
@@ -79,7 +80,7 @@ private static void onPlayerJoin(ServerPlayer player) {
 
     EconomyManager eco = getManager(server);
     
-    eco.getBestName(player.getUUID()); 
+    eco.getNames().put(player.getUUID(), IdentityCompat.of(player).name());
     
     eco.getBalance(player.getUUID(), true);
 
@@ -90,10 +91,7 @@ private static void onPlayerJoin(ServerPlayer player) {
         }
     }
 
-    boolean hasOrders = eco.getOrders().hasDeliveries(player.getUUID());
-    boolean hasShop = eco.getShop().hasDeliveries(player.getUUID());
-
-    if (hasOrders || hasShop) {
+    if (eco.getDeliveries().has(player.getUUID())) {
         ClickEvent ev = ChatCompat.runCommandEvent("/eco orders claim");
         
         if (ev != null) {
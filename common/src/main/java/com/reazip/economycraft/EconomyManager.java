@@ -3,54 +3,65 @@ package com.reazip.economycraft;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.mojang.logging.LogUtils;
+import com.reazip.economycraft.core.Ledger;
+import com.reazip.economycraft.data.RecordSnapshot;
+import com.reazip.economycraft.jfr.SaveEvent;
+import com.reazip.economycraft.jfr.TransferEvent;
 import com.reazip.economycraft.util.IdentityCompat;
 import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.scores.DisplaySlot;
 import net.minecraft.world.scores.Objective;
 import net.minecraft.world.scores.Scoreboard;
 import net.minecraft.world.scores.ScoreHolder;
 import net.minecraft.world.scores.criteria.ObjectiveCriteria;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 public class EconomyManager {
+    private static final Logger LOGGER = LogUtils.getLogger();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final Type TYPE = new TypeToken<Map<UUID, Long>>(){}.getType();
     private static final Type DAILY_SELL_TYPE = new TypeToken<Map<UUID, DailySellData>>(){}.getType();
 
     private final MinecraftServer server;
-    private final Path file, dailySellFile;
+    private final Path legacyFile, legacyDailySellFile;
+    private final Ledger ledger;
+    private final RecordSnapshot<DailySellData> dailySellSnapshot;
+    private boolean legacyPending;
 
-    private final Map<UUID, Long> balances = new ConcurrentHashMap<>();
     private final Map<UUID, DailySellData> dailySells = new ConcurrentHashMap<>();
-    private final Map<UUID, String> userCache = new ConcurrentHashMap<>();
-
-    private List<Map.Entry<UUID, Long>> cachedTopEntries = new ArrayList<>();
-    private long lastTopUpdate = 0;
+    private final PlayerNameIndex names = new PlayerNameIndex();
 
     private final PriceRegistry prices;
     private final com.reazip.economycraft.shop.ShopManager shop;
     private final com.reazip.economycraft.orders.OrderManager orders;
+    private final DeliveryInbox deliveries;
+    private final OrderMatcher matcher;
 
     private Objective objective;
     public static final long MAX = 999_999_999L;
-    
-    private boolean isDirty = false;
+
+    private volatile boolean isDirty = false;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final MetricsExporter metrics;
 
     public EconomyManager(MinecraftServer server) {
         this.server = server;
@@ -61,18 +72,37 @@ public class EconomyManager {
             Files.createDirectories(dataDir); 
         } catch (IOException ignored) {}
 
-        this.file = dataDir.resolve("balances.json");
-        this.dailySellFile = dataDir.resolve("daily_sells.json");
+        this.legacyFile = dataDir.resolve("balances.json");
+        this.legacyDailySellFile = dataDir.resolve("daily_sells.json");
+        this.dailySellSnapshot = new RecordSnapshot<>(dataDir.resolve("daily_sells.dat"), DAILY_SELL_CODEC);
+        this.ledger = new Ledger(dataDir, () -> EconomyConfig.get().startingBalance, MAX);
 
-        loadAll();
+        boolean changed = ledger.load(this::loadLegacyBalances);
+        loadDailySells();
+        if (changed || legacyPending) save();
+        ledger.setListener((player, balance) -> {
+            if (balance != null) updateScore(player, balance);
+            markDirty();
+            OrderMatcher m = this.matcher; // null until the constructor has created it
+            if (m != null) m.onBalanceChanged(player);
+        });
         loadUserCache();
 
-        this.shop = new com.reazip.economycraft.shop.ShopManager(server);
-        this.orders = new com.reazip.economycraft.orders.OrderManager(server);
         this.prices = new PriceRegistry(server);
+        this.shop = new com.reazip.economycraft.shop.ShopManager(server, this::getBestName, this::categoryOf);
+        this.orders = new com.reazip.economycraft.orders.OrderManager(server);
+        this.deliveries = new DeliveryInbox(server);
+        if (deliveries.load(shop.legacyDeliveries(), orders.legacyDeliveries())) {
+            // The inbox file is on disk: rewrite shop.json and orders.json without the deliveries.
+            shop.dropLegacyDeliveries();
+            orders.dropLegacyDeliveries();
+        }
+        this.matcher = new OrderMatcher(server, this, shop, orders);
 
         initScoreboard();
         startAutoSave();
+        EconomyMetrics.bind(this);
+        this.metrics = MetricsExporter.start(server.getFile("config/economycraft"), scheduler);
     }
 
     private void startAutoSave() {
@@ -81,6 +111,11 @@ public class EconomyManager {
                 save();
             }
         }, 5, 5, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (ledger.needsCompaction()) {
+                save();
+            }
+        }, 30, 30, TimeUnit.SECONDS);
     }
 
     public void markDirty() {
@@ -91,93 +126,127 @@ public class EconomyManager {
 
     // --- Core API ---
 
-    public Map<UUID, Long> getBalances() { return balances; }
+    /** Read-only view of every account balance. */
+    public Map<UUID, Long> getBalances() { return ledger.balances(); }
 
-    public synchronized List<Map.Entry<UUID, Long>> getSortedBalances() {
-        long now = System.currentTimeMillis();
-        if (cachedTopEntries.isEmpty() || (now - lastTopUpdate) > 60000) {
-            cachedTopEntries = balances.entrySet().stream()
-                    .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
-                    .limit(10)
-                    .collect(Collectors.toList());
-            lastTopUpdate = now;
-        }
-        return cachedTopEntries;
+    public List<Map.Entry<UUID, Long>> getSortedBalances() {
+        return ledger.leaderboard().page(0, 10);
     }
 
+    public Leaderboard getLeaderboard() { return ledger.leaderboard(); }
+
+    public Ledger getLedger() { return ledger; }
+
     @Nullable
     public String getBestName(UUID id) {
         ServerPlayer online = server.getPlayerList().getPlayer(id);
         if (online != null) {
             String name = IdentityCompat.of(online).name();
-            userCache.put(id, name);
+            names.put(id, name);
             return name;
         }
-        return userCache.getOrDefault(id, id.toString());
+        String name = names.name(id);
+        return name != null ? name : id.toString();
     }
 
+    public PlayerNameIndex getNames() { return names; }
+
     public UUID tryResolveUuidByName(String name) {
         if (name == null || name.isBlank()) return null;
         
         ServerPlayer online = server.getPlayerList().getPlayerByName(name);
         if (online != null) return online.getUUID();
-        for (var e : userCache.entrySet()) {
-            if (name.equalsIgnoreCase(e.getValue())) return e.getKey();
-        }
+        UUID known = names.resolve(name);
+        if (known != null) return known;
         
         try { return UUID.fromString(name); } catch (Exception ignored) {}
         return null;
     }
 
     public Long getBalance(UUID player, boolean createIfMissing) {
-        Long bal = balances.get(player);
-        if (bal == null) {
-            if (!createIfMissing) return null;
-            long start = clamp(EconomyConfig.get().startingBalance);
-            balances.put(player, start);
-            updateScore(player, start);
-            markDirty();
-            return start;
-        }
-        return bal;
+        return createIfMissing ? ledger.getOrOpen(player) : ledger.get(player);
     }
 
     public void setMoney(UUID player, long amount) {
-        long newVal = clamp(amount);
-        balances.put(player, newVal);
-        updateScore(player, newVal);
-        markDirty();
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        ledger.set(player, amount);
+        EconomyMetrics.BALANCE_CHANGES.increment();
+        commit(event, "set", null, player, amount, 1, true);
     }
 
     public void addMoney(UUID player, long amount) {
-        long newVal = clamp(getBalance(player, true) + amount);
-        balances.put(player, newVal);
-        updateScore(player, newVal);
-        markDirty();
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        ledger.add(player, amount);
+        EconomyMetrics.BALANCE_CHANGES.increment();
+        commit(event, "add", null, player, amount, 1, true);
     }
 
     public boolean removeMoney(UUID player, long amount) {
-        long current = getBalance(player, true);
-        if (current < amount) return false;
-        long newVal = clamp(current - amount);
-        balances.put(player, newVal);
-        updateScore(player, newVal);
-        markDirty();
-        return true;
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        boolean removed = ledger.remove(player, amount);
+        if (removed) EconomyMetrics.BALANCE_CHANGES.increment();
+        commit(event, "remove", player, null, amount, 1, removed);
+        return removed;
     }
 
     public boolean pay(UUID from, UUID to, long amount) {
         if (amount <= 0) return false;
-        if (removeMoney(from, amount)) {
-            addMoney(to, amount);
-            return true;
+        return transfer(Transaction.create().debit(from, amount).credit(to, amount), "pay");
+    }
+
+    /** Applies every leg of the transaction or none of them; see {@link Ledger#transfer(Transaction)}. */
+    public boolean transfer(Transaction tx) {
+        return transfer(tx, "transaction");
+    }
+
+    private boolean transfer(Transaction tx, String kind) {
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean applied = ledger.transfer(tx);
+        EconomyMetrics.TRANSFER_TIME.recordSince(start);
+        if (applied) {
+            EconomyMetrics.TRANSFERS.increment();
+        } else {
+            EconomyMetrics.TRANSFERS_REJECTED.increment();
+        }
+        if (event.shouldCommit()) {
+            UUID from = null;
+            UUID to = null;
+            long amount = 0;
+            for (Map.Entry<UUID, Long> leg : tx.legs().entrySet()) {
+                if (leg.getValue() < 0) {
+                    if (from == null) from = leg.getKey();
+                    amount -= leg.getValue();
+                } else if (to == null) {
+                    to = leg.getKey();
+                }
+            }
+            commit(event, kind, from, to, amount, tx.legs().size(), applied);
         }
-        return false;
+        return applied;
+    }
+
+    // Only fills the event in while a recording has it enabled; otherwise the event costs next to nothing.
+    private static void commit(TransferEvent event, String kind, @Nullable UUID from, @Nullable UUID to,
+                               long amount, int legs, boolean applied) {
+        if (!event.shouldCommit()) return;
+        event.kind = kind;
+        event.from = from == null ? null : from.toString();
+        event.to = to == null ? null : to.toString();
+        event.amount = amount;
+        event.legs = legs;
+        event.applied = applied;
+        event.commit();
     }
 
     public void removePlayer(UUID player) {
-        balances.remove(player);
+        ledger.removeAccount(player);
         dailySells.remove(player);
+        dailySellSnapshot.markDirty(player);
         markDirty();
     }
 
@@ -195,10 +264,20 @@ public class EconomyManager {
         }
 
         dailySells.put(player, new DailySellData(data.day(), currentTotal + saleAmount));
+        dailySellSnapshot.markDirty(player);
         markDirty();
         return true;
     }
 
+    /** Gives back a sale recorded by {@link #tryRecordDailySell} whose payment then failed. */
+    public void releaseDailySell(UUID player, long saleAmount) {
+        if (EconomyConfig.get().dailySellLimit <= 0) return;
+        DailySellData data = getOrCreateTodaySellData(player);
+        dailySells.put(player, new DailySellData(data.day(), Math.max(0L, data.amount() - saleAmount)));
+        dailySellSnapshot.markDirty(player);
+        markDirty();
+    }
+
     public long getDailySellRemaining(UUID player) {
         long limit = EconomyConfig.get().dailySellLimit;
         if (limit <= 0) return Long.MAX_VALUE;
@@ -212,6 +291,7 @@ public class EconomyManager {
         if (data == null || data.day() != today) {
             data = new DailySellData(today, 0L);
             dailySells.put(player, data);
+            dailySellSnapshot.markDirty(player);
         }
         return data;
     }
@@ -242,7 +322,7 @@ public class EconomyManager {
             objective = board.addObjective("eco_balance", ObjectiveCriteria.DUMMY, Component.literal("Balance"), ObjectiveCriteria.RenderType.INTEGER, true, null);
         }
         board.setDisplayObjective(DisplaySlot.SIDEBAR, objective);
-        balances.forEach(this::updateScore);
+        ledger.balances().forEach(this::updateScore);
     }
 
     private void updateScore(UUID player, long amount) {
@@ -253,29 +333,73 @@ public class EconomyManager {
 
     // --- File IO ---
 
-    private void loadAll() {
+    /** Balances from balances.json, read only when there is no binary snapshot yet. */
+    private Map<UUID, Long> loadLegacyBalances() {
+        if (!Files.exists(legacyFile)) return null;
         try {
-            if (Files.exists(file)) {
-                Map<UUID, Long> map = GSON.fromJson(Files.readString(file), TYPE);
-                if (map != null) balances.putAll(map);
-            }
-            if (Files.exists(dailySellFile)) {
-                Map<UUID, DailySellData> map = GSON.fromJson(Files.readString(dailySellFile), DAILY_SELL_TYPE);
+            Map<UUID, Long> map = GSON.fromJson(Files.readString(legacyFile), TYPE);
+            legacyPending = true;
+            return map;
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load balances", e);
+            return null;
+        }
+    }
+
+    private void loadDailySells() {
+        try {
+            if (Files.exists(dailySellSnapshot.file())) {
+                dailySellSnapshot.load(dailySells::put);
+            } else if (Files.exists(legacyDailySellFile)) {
+                Map<UUID, DailySellData> map = GSON.fromJson(Files.readString(legacyDailySellFile), DAILY_SELL_TYPE);
                 if (map != null) dailySells.putAll(map);
+                dailySells.keySet().forEach(dailySellSnapshot::markDirty);
+                legacyPending = true;
             }
-        } catch (Exception ignored) {}
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load daily sells", e);
+        }
     }
 
+    /** Writes the changed snapshot pages and compacts the journal records they cover. */
     public synchronized void save() {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            Files.writeString(file, GSON.toJson(balances, TYPE));
-            Files.writeString(dailySellFile, GSON.toJson(dailySells, DAILY_SELL_TYPE));
             isDirty = false;
-        } catch (IOException ignored) {}
+            ledger.save();
+            dailySellSnapshot.save(dailySells::get);
+            if (legacyPending) retireLegacyFiles();
+            success = true;
+        } catch (IOException e) {
+            isDirty = true;
+            EconomyMetrics.BALANCE_SAVE_FAILURES.increment();
+            LOGGER.error("[EconomyCraft] Failed to save balances", e);
+        } finally {
+            EconomyMetrics.BALANCE_SAVE_TIME.recordSince(start);
+            if (event.shouldCommit()) {
+                event.store = "balances";
+                event.records = ledger.size();
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    private void retireLegacyFiles() throws IOException {
+        for (Path legacy : List.of(legacyFile, legacyDailySellFile)) {
+            if (Files.exists(legacy)) {
+                Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        legacyPending = false;
+        LOGGER.info("[EconomyCraft] Migrated balances.json and daily_sells.json to the binary snapshot format");
     }
 
-    private void loadUserCache() {
-        userCache.clear();
+    /** Merges usercache.json into the name index; names seen on join since startup are kept. */
+    public void loadUserCache() {
         try {
             Path cachePath = server.getFile("usercache.json");
             if (Files.exists(cachePath)) {
@@ -283,7 +407,7 @@ public class EconomyManager {
                 if (entries != null) {
                     for (UserCacheEntry e : entries) {
                         if (e.uuid != null && e.name != null) {
-                            userCache.put(UUID.fromString(e.uuid), e.name);
+                            names.put(UUID.fromString(e.uuid), e.name);
                         }
                     }
                 }
@@ -299,8 +423,7 @@ public class EconomyManager {
         long loss = (long) Math.floor(pct * victimBal);
         if (loss <= 0) return;
         
-        removeMoney(victim.getUUID(), loss);
-        addMoney(killer.getUUID(), loss);
+        if (!transfer(Transaction.create().debit(victim.getUUID(), loss).credit(killer.getUUID(), loss))) return;
         
         victim.sendSystemMessage(Component.literal("Je verloor ")
             .append(Component.literal(EconomyCraft.formatMoney(loss)).withStyle(ChatFormatting.GOLD))
@@ -315,12 +438,36 @@ public class EconomyManager {
             .withStyle(ChatFormatting.RED));
     }
 
-    private long clamp(long value) { return Math.max(0, Math.min(MAX, value)); }
     public com.reazip.economycraft.shop.ShopManager getShop() { return shop; }
     public com.reazip.economycraft.orders.OrderManager getOrders() { return orders; }
+    public OrderMatcher getMatcher() { return matcher; }
+    public DeliveryInbox getDeliveries() { return deliveries; }
     public PriceRegistry getPrices() { return prices; }
-    public void shutdown() { scheduler.shutdown(); save(); }
+
+    /** Price-table category of the stack, or null when it has no price entry. */
+    private String categoryOf(ItemStack stack) {
+        PriceRegistry.PriceEntry entry = prices.get(stack);
+        return entry == null ? null : entry.category();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        save();
+        ledger.close();
+        shop.shutdown();
+        orders.shutdown();
+        deliveries.shutdown();
+        metrics.close();
+        EconomyMetrics.unbind(this);
+    }
 
     private static final class UserCacheEntry { String name; String uuid; }
     private record DailySellData(long day, long amount) {}
+
+    // Same layout as RecordSnapshot.LONG_PAIR so the offline converter can write it.
+    private static final RecordSnapshot.Codec<DailySellData> DAILY_SELL_CODEC = new RecordSnapshot.Codec<>() {
+        @Override public int size() { return 16; }
+        @Override public void write(DailySellData value, ByteBuffer out) { out.putLong(value.day()).putLong(value.amount()); }
+        @Override public DailySellData read(ByteBuffer in) { return new DailySellData(in.getLong(), in.getLong()); }
+    };
 }
@@ -0,0 +1,116 @@
+package com.reazip.economycraft;
+
+import com.reazip.economycraft.data.BackgroundWriter;
+import com.reazip.economycraft.metrics.Counter;
+import com.reazip.economycraft.metrics.Histogram;
+import com.reazip.economycraft.metrics.MetricRegistry;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Everything the mod measures about itself, shown by {@code /eco stats} and exported in the Prometheus text
+ * format by {@link MetricsExporter}. Counters and timers live for the whole JVM; the gauges read the running
+ * server's managers.
+ */
+public final class EconomyMetrics {
+    public static final MetricRegistry REGISTRY = new MetricRegistry("economycraft");
+
+    // --- Balances ---
+    public static final Counter TRANSFERS = REGISTRY.counter("transfers_total",
+            "Transfers applied: payments, purchases, order fills and PvP losses.");
+    public static final Counter TRANSFERS_REJECTED = REGISTRY.counter("transfers_rejected_total",
+            "Transfers refused because an account could not cover its part.");
+    public static final Histogram TRANSFER_TIME = REGISTRY.timer("transfer_seconds",
+            "Time to apply a transfer, including lock waits.");
+    public static final Counter BALANCE_CHANGES = REGISTRY.counter("balance_changes_total",
+            "Single-account balance changes: sales, admin commands and server shop purchases.");
+    public static final Histogram BALANCE_SAVE_TIME = REGISTRY.timer("balance_save_seconds",
+            "Time to write the balance and daily sell snapshots.");
+    public static final Counter BALANCE_SAVE_FAILURES = REGISTRY.counter("balance_save_failures_total",
+            "Balance saves that failed; the data is kept and saved again later.");
+
+    // --- Shop ---
+    public static final Counter SHOP_LISTINGS_ADDED = REGISTRY.counter("shop_listings_added_total",
+            "Listings put up in the auction house.");
+    public static final Counter SHOP_PURCHASES = REGISTRY.counter("shop_purchases_total",
+            "Auction house listings bought.");
+    public static final Histogram SHOP_SAVE_TIME = REGISTRY.timer("shop_save_seconds",
+            "Time to write the shop file.");
+    public static final Counter SHOP_SAVE_FAILURES = REGISTRY.counter("shop_save_failures_total",
+            "Shop saves that failed and were retried.");
+
+    // --- Orders ---
+    public static final Counter ORDER_REQUESTS_ADDED = REGISTRY.counter("order_requests_added_total",
+            "Order requests placed.");
+    public static final Counter ORDERS_FULFILLED = REGISTRY.counter("orders_fulfilled_total",
+            "Order requests fulfilled by hand from the orders menu.");
+    public static final Counter ORDER_MATCHES = REGISTRY.counter("order_matches_total",
+            "Order requests filled automatically from auction house listings.");
+    public static final Histogram ORDER_SAVE_TIME = REGISTRY.timer("order_save_seconds",
+            "Time to write the orders file.");
+    public static final Counter ORDER_SAVE_FAILURES = REGISTRY.counter("order_save_failures_total",
+            "Order saves that failed and were retried.");
+
+    // --- Deliveries ---
+    public static final Histogram DELIVERY_SAVE_TIME = REGISTRY.timer("delivery_save_seconds",
+            "Time to write the deliveries file.");
+    public static final Counter DELIVERY_SAVE_FAILURES = REGISTRY.counter("delivery_save_failures_total",
+            "Delivery saves that failed and were retried.");
+
+    // --- Prices ---
+    public static final Counter PRICE_LOOKUPS = REGISTRY.counter("price_lookups_total",
+            "Item stacks resolved against the price table.");
+    public static final Counter PRICE_CACHE_MISSES = REGISTRY.counter("price_cache_misses_total",
+            "Price lookups that had to search the price table.");
+    public static final Histogram PRICE_RELOAD_TIME = REGISTRY.timer("price_reload_seconds",
+            "Time to read prices.json and rebuild the price table.");
+    public static final Counter PRICE_RELOAD_FAILURES = REGISTRY.counter("price_reload_failures_total",
+            "Price reloads that failed; the previous prices stay in use.");
+
+    // --- Menus ---
+    public static final Histogram SHOP_UI_RENDER_TIME = REGISTRY.timer("shop_ui_render_seconds",
+            "Time to fill one auction house menu page.");
+    public static final Histogram ORDERS_UI_RENDER_TIME = REGISTRY.timer("orders_ui_render_seconds",
+            "Time to fill one orders or delivery menu page.");
+    public static final Histogram SERVER_SHOP_UI_RENDER_TIME = REGISTRY.timer("server_shop_ui_render_seconds",
+            "Time to fill one server shop menu page.");
+
+    // Set while a server runs so the gauges can read its managers.
+    private static volatile EconomyManager manager;
+
+    static {
+        REGISTRY.gauge("accounts", "Accounts with a balance.", () -> live(m -> m.getLedger().size()));
+        REGISTRY.gauge("shop_listings", "Listings in the auction house.", () -> live(m -> m.getShop().getListings().size()));
+        REGISTRY.gauge("order_requests", "Open order requests.", () -> live(m -> m.getOrders().getRequests().size()));
+    }
+
+    private EconomyMetrics() {}
+
+    static void bind(EconomyManager eco) {
+        manager = eco;
+    }
+
+    static void unbind(EconomyManager eco) {
+        if (manager == eco) manager = null;
+    }
+
+    private static long live(ToLongFunction<EconomyManager> value) {
+        EconomyManager m = manager;
+        return m == null ? 0 : value.applyAsLong(m);
+    }
+
+    /** Wraps a writer sink so every write's duration and every failure are recorded; failures still propagate. */
+    public static <S> BackgroundWriter.Sink<S> timed(BackgroundWriter.Sink<S> sink, Histogram time, Counter failures) {
+        return snapshot -> {
+            long start = System.nanoTime();
+            try {
+                sink.write(snapshot);
+            } catch (Exception e) {
+                failures.increment();
+                throw e;
+            } finally {
+                time.recordSince(start);
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.reazip.economycraft;
+
+import com.mojang.logging.LogUtils;
+import com.reazip.economycraft.data.AtomicFiles;
+import com.reazip.economycraft.metrics.PrometheusText;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link EconomyMetrics} in the Prometheus text format, as configured: rewritten to
+ * {@code metrics_file} every few seconds and/or served at {@code http://127.0.0.1:<metrics_port>/metrics}.
+ */
+final class MetricsExporter {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final Path file;
+    private final HttpServer http;
+
+    private MetricsExporter(Path file, HttpServer http) {
+        this.file = file;
+        this.http = http;
+    }
+
+    /** Starts whatever the config enables; file writes run on {@code scheduler}. */
+    static MetricsExporter start(Path configDir, ScheduledExecutorService scheduler) {
+        EconomyConfig config = EconomyConfig.get();
+        Path file = null;
+        if (config.metricsFile != null && !config.metricsFile.isBlank()) {
+            file = configDir.resolve(config.metricsFile);
+            long interval = Math.max(1, config.metricsFileIntervalSeconds);
+            Path target = file;
+            scheduler.scheduleAtFixedRate(() -> writeFile(target), interval, interval, TimeUnit.SECONDS);
+            LOGGER.info("[EconomyCraft] Writing metrics to {} every {} s", file, interval);
+        }
+
+        HttpServer http = null;
+        if (config.metricsPort > 0) {
+            try {
+                http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.metricsPort), 0);
+                http.createContext("/metrics", exchange -> {
+                    try (exchange) {
+                        byte[] body = PrometheusText.format(EconomyMetrics.REGISTRY).getBytes(StandardCharsets.UTF_8);
+                        exchange.getResponseHeaders().set("Content-Type", PrometheusText.CONTENT_TYPE);
+                        exchange.sendResponseHeaders(200, body.length);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            out.write(body);
+                        }
+                    }
+                });
+                http.start();
+                LOGGER.info("[EconomyCraft] Serving metrics on http://127.0.0.1:{}/metrics", config.metricsPort);
+            } catch (IOException e) {
+                LOGGER.error("[EconomyCraft] Could not serve metrics on port {}", config.metricsPort, e);
+                http = null;
+            }
+        }
+        return new MetricsExporter(file, http);
+    }
+
+    private static void writeFile(Path file) {
+        try {
+            AtomicFiles.writeString(file, PrometheusText.format(EconomyMetrics.REGISTRY));
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to write metrics to {}", file, e);
+        }
+    }
+
+    /** Stops serving and writes the file one last time. */
+    void close() {
+        if (http != null) http.stop(0);
+        if (file != null) writeFile(file);
+    }
+}
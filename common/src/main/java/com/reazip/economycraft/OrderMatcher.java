@@ -0,0 +1,235 @@
+package com.reazip.economycraft;
+
+import com.mojang.logging.LogUtils;
+import com.reazip.economycraft.core.OrderBook;
+import com.reazip.economycraft.core.OrderBook.Quote;
+import com.reazip.economycraft.orders.OrderManager;
+import com.reazip.economycraft.orders.OrderRequest;
+import com.reazip.economycraft.shop.ShopListing;
+import com.reazip.economycraft.shop.ShopManager;
+import com.reazip.economycraft.util.ChatCompat;
+import com.reazip.economycraft.util.ItemKey;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import org.slf4j.Logger;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crosses order requests (bids) against shop listings (asks) of the same item with price-time priority.
+ * The {@link OrderBook}, keyed by item (components included), is kept in step with the managers' change
+ * events; matching runs on the server thread right after a change, fills at the listing's price and
+ * delivers through the delivery inbox. Bids the requester cannot pay for are parked outside the book until
+ * their balance changes, so they are not retried on every pass.
+ */
+public class OrderMatcher {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final MinecraftServer server;
+    private final EconomyManager eco;
+    private final ShopManager shop;
+    private final OrderManager orders;
+
+    // Guarded by this.
+    private final OrderBook<ItemKey> book = new OrderBook<>();
+    // Items with a match pass already queued on the server thread.
+    private final Set<ItemKey> pending = new HashSet<>();
+    // Unfunded bid ids per requester, changed under this. Concurrent so balance changes can skip the lock.
+    private final Map<UUID, Set<Integer>> parked = new ConcurrentHashMap<>();
+
+    OrderMatcher(MinecraftServer server, EconomyManager eco, ShopManager shop, OrderManager orders) {
+        this.server = server;
+        this.eco = eco;
+        this.shop = shop;
+        this.orders = orders;
+
+        for (ShopListing l : shop.getListings()) putAsk(l);
+        for (OrderRequest r : orders.getRequests()) putBid(r);
+        shop.addListener(change -> onListingChanged(change.listingId()));
+        orders.addListener(this::onRequestChanged);
+        synchronized (this) {
+            book.keys().forEach(this::schedule);
+        }
+    }
+
+    private synchronized void onListingChanged(int listingId) {
+        book.removeAsk(listingId);
+        ShopListing l = shop.getListing(listingId);
+        if (l != null) schedule(putAsk(l));
+    }
+
+    private synchronized void onRequestChanged(int requestId) {
+        book.removeBid(requestId);
+        OrderRequest r = orders.getRequest(requestId);
+        if (r != null) {
+            Set<Integer> ids = parked.get(r.requester);
+            if (ids != null) ids.remove(requestId);
+            schedule(putBid(r));
+        }
+    }
+
+    /** Puts the player's parked bids back into the book; called on every balance change, from any thread. */
+    void onBalanceChanged(UUID player) {
+        if (!parked.containsKey(player)) return;
+        synchronized (this) {
+            Set<Integer> ids = parked.remove(player);
+            if (ids == null) return;
+            for (int id : ids) {
+                OrderRequest r = orders.getRequest(id);
+                if (r != null) schedule(putBid(r));
+            }
+        }
+    }
+
+    /** Takes a bid out of the book until its requester's balance changes. Server thread only. */
+    private synchronized void park(Quote bid) {
+        book.removeBid(bid.id());
+        parked.computeIfAbsent(bid.owner(), k -> ConcurrentHashMap.newKeySet()).add(bid.id());
+    }
+
+    private synchronized ItemKey putAsk(ShopListing l) {
+        if (l.seller == null || l.item.isEmpty()) return null;
+        ItemKey key = ItemKey.of(l.item);
+        book.putAsk(key, new Quote(l.id, l.seller, l.price, l.item.getCount()));
+        return key;
+    }
+
+    private synchronized ItemKey putBid(OrderRequest r) {
+        if (r.requester == null || r.item == null || r.item.isEmpty() || r.amount <= 0) return null;
+        ItemKey key = ItemKey.of(r.item);
+        book.putBid(key, new Quote(r.id, r.requester, r.price, r.amount));
+        return key;
+    }
+
+    /** Queues one match pass per item; a burst of changes to the same item collapses into one pass. */
+    private void schedule(ItemKey key) {
+        if (key == null || !EconomyConfig.get().orderMatchingEnabled || !pending.add(key)) return;
+        server.execute(() -> {
+            synchronized (this) {
+                pending.remove(key);
+            }
+            match(key);
+        });
+    }
+
+    private enum Outcome { FILLED, NEXT_ASK, NEXT_BID }
+
+    /**
+     * Fills the best bid from the best crossing ask until nothing crosses. Each step is a navigation in the
+     * book, not a copy of a side. Server thread only.
+     */
+    private void match(ItemKey key) {
+        Quote bid = null;
+        while (true) {
+            synchronized (this) {
+                bid = book.nextCrossingBid(key, bid);
+            }
+            if (bid == null) return;
+            // A fill changes the book, so start again from the best bid; otherwise try the next one.
+            if (fillBid(key, bid)) bid = null;
+        }
+    }
+
+    /** Fills the bid from the cheapest ask that will take it; an ask whose seller is at the daily limit is skipped. */
+    private boolean fillBid(ItemKey key, Quote bid) {
+        Quote ask = null;
+        while (true) {
+            synchronized (this) {
+                ask = book.nextAskFor(key, bid, ask);
+            }
+            if (ask == null) return false;
+            switch (fill(bid, ask)) {
+                case FILLED -> { return true; }
+                case NEXT_BID -> { return false; }
+                case NEXT_ASK -> { }
+            }
+        }
+    }
+
+    /**
+     * Executes one fill on the listing's terms: the requester pays the price plus tax, as on a manual purchase,
+     * and the seller receives the full price. The seller's daily limit is only used up by a payment that went
+     * through.
+     */
+    private Outcome fill(Quote bid, Quote ask) {
+        OrderRequest request = orders.getRequest(bid.id());
+        if (request == null) return Outcome.NEXT_BID;
+        ShopListing listing = shop.getListing(ask.id());
+        if (listing == null) return Outcome.NEXT_ASK;
+
+        OrderBook.Fill fill = OrderBook.fill(bid, ask, EconomyConfig.get().taxRate);
+        int quantity = fill.quantity();
+        long cost = fill.cost();
+
+        Long funds = eco.getBalance(request.requester, false);
+        if (funds == null || funds < fill.buyerPays()) {
+            park(bid);
+            return Outcome.NEXT_BID;
+        }
+        if (!eco.tryRecordDailySell(listing.seller, cost)) return Outcome.NEXT_ASK;
+        if (!eco.transfer(fill.transaction(request.requester, listing.seller))) {
+            eco.releaseDailySell(listing.seller, cost);
+            park(bid);
+            return Outcome.NEXT_BID;
+        }
+
+        if (quantity == ask.quantity()) {
+            shop.removeListing(listing.id);
+        } else {
+            ShopListing rest = new ShopListing();
+            rest.id = listing.id;
+            rest.seller = listing.seller;
+            rest.item = listing.item.copyWithCount(ask.quantity() - quantity);
+            rest.price = ask.price() - cost;
+            shop.replaceListing(rest);
+        }
+
+        if (quantity == bid.quantity()) {
+            orders.removeRequest(request.id);
+        } else {
+            OrderRequest rest = new OrderRequest();
+            rest.id = request.id;
+            rest.requester = request.requester;
+            rest.item = request.item;
+            rest.amount = bid.quantity() - quantity;
+            rest.price = bid.price() - bid.price() * quantity / bid.quantity();
+            orders.replaceRequest(rest);
+        }
+
+        eco.getDeliveries().add(request.requester, listing.item.copyWithCount(quantity));
+        EconomyMetrics.ORDER_MATCHES.increment();
+
+        notifyFill(request.requester, listing.seller, listing.item, fill);
+        LOGGER.debug("[EconomyCraft] Matched order {} with listing {}: {}x for {}", request.id, listing.id, quantity, cost);
+        return Outcome.FILLED;
+    }
+
+    private void notifyFill(UUID buyer, UUID seller, ItemStack item, OrderBook.Fill fill) {
+        String itemName = item.getHoverName().getString();
+
+        ServerPlayer requester = server.getPlayerList().getPlayer(buyer);
+        if (requester != null) {
+            ClickEvent ev = ChatCompat.runCommandEvent("/eco orders claim");
+            requester.sendSystemMessage(Component.literal("Je bestelling is aangevuld met " + fill.quantity() + "x " + itemName
+                            + " voor " + EconomyCraft.formatMoney(fill.buyerPays()) + "! ")
+                    .withStyle(ChatFormatting.YELLOW)
+                    .append(Component.literal("[Claim hier]")
+                            .withStyle(s -> s.withColor(ChatFormatting.GREEN).withUnderlined(true).withClickEvent(ev))));
+        }
+
+        ServerPlayer sellerPlayer = server.getPlayerList().getPlayer(seller);
+        if (sellerPlayer != null) {
+            sellerPlayer.sendSystemMessage(Component.literal("Verkocht " + fill.quantity() + "x " + itemName
+                    + " aan " + eco.getBestName(buyer) + " voor " + EconomyCraft.formatMoney(fill.cost()))
+                    .withStyle(ChatFormatting.GREEN));
+        }
+    }
+}
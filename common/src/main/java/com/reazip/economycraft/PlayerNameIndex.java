@@ -0,0 +1,69 @@
+package com.reazip.economycraft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/** Bidirectional UUID/name lookup with case-insensitive resolution and prefix completion. */
+public class PlayerNameIndex {
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final Map<String, UUID> byName = new ConcurrentHashMap<>();
+    // Sorted by folded name so every name with a given prefix is one contiguous range.
+    private final ConcurrentSkipListMap<String, UUID> sorted = new ConcurrentSkipListMap<>();
+
+    public synchronized void put(UUID id, String name) {
+        if (id == null || name == null || name.isBlank()) return;
+        String old = names.put(id, name);
+        if (name.equals(old)) return;
+        if (old != null) unlink(fold(old), id);
+
+        String key = fold(name);
+        UUID previousOwner = byName.put(key, id);
+        sorted.put(key, id);
+        if (previousOwner != null && !previousOwner.equals(id)) {
+            // Someone else used to have this name; they keep their UUID but lose the name.
+            names.computeIfPresent(previousOwner, (k, v) -> fold(v).equals(key) ? null : v);
+        }
+    }
+
+    public synchronized void clear() {
+        names.clear();
+        byName.clear();
+        sorted.clear();
+    }
+
+    private void unlink(String key, UUID id) {
+        byName.remove(key, id);
+        sorted.remove(key, id);
+    }
+
+    public String name(UUID id) {
+        return names.get(id);
+    }
+
+    public UUID resolve(String name) {
+        return name == null ? null : byName.get(fold(name));
+    }
+
+    /** Up to {@code limit} names starting with {@code prefix} (case-insensitive) whose UUID passes the filter. */
+    public List<String> complete(String prefix, int limit, Predicate<UUID> filter) {
+        String from = fold(prefix);
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, UUID> e : sorted.tailMap(from, true).entrySet()) {
+            if (!e.getKey().startsWith(from) || out.size() >= limit) break;
+            if (!filter.test(e.getValue())) continue;
+            String name = names.get(e.getValue());
+            if (name != null) out.add(name);
+        }
+        return out;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
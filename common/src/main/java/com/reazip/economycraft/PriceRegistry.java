@@ -6,18 +6,23 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mojang.logging.LogUtils;
 import net.minecraft.core.registries.BuiltInRegistries;
+import com.reazip.economycraft.core.PriceTable;
+import com.reazip.economycraft.jfr.PriceReloadEvent;
 import com.reazip.economycraft.util.IdentifierCompat;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.core.Holder;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.world.item.Items;
+import net.minecraft.world.item.alchemy.Potion;
 import net.minecraft.world.item.alchemy.PotionContents;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import net.minecraft.world.item.enchantment.Enchantment;
 import net.minecraft.world.item.enchantment.ItemEnchantments;
 import net.minecraft.world.item.component.BundleContents;
 import net.minecraft.world.item.component.ItemContainerContents;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -27,18 +32,26 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class PriceRegistry {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final String DEFAULT_RESOURCE_PATH = "/assets/economycraft/prices.json";
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private final Path file;
-    private final Map<IdentifierCompat.Id, PriceEntry> prices = new LinkedHashMap<>();
+    private static final ResolvedPrice NO_PRICE = new ResolvedPrice(null, null);
+    // Replaced as a whole on reload, so readers always see one consistent price table.
+    private volatile Catalog catalog = new Catalog(Map.of());
 
     public record ResolvedPrice(IdentifierCompat.Id key, PriceEntry entry) {}
+    private record PotionKey(Item item, @Nullable Holder<Potion> potion) {}
 
     public PriceRegistry(MinecraftServer server) {
-        Path dir = server.getFile("config/economycraft");
+        this(server.getFile("config/economycraft"));
+    }
+
+    /** Reads (and creates or extends) prices.json in {@code dir}; used without a server by the benchmarks. */
+    public PriceRegistry(Path dir) {
         try {
             Files.createDirectories(dir);
         } catch (IOException e) {
@@ -54,14 +67,21 @@ public final class PriceRegistry {
     }
 
     public void reload() {
-        this.prices.clear();
-        if (Files.notExists(file)) return;
+        if (Files.notExists(file)) {
+            catalog = new Catalog(Map.of());
+            return;
+        }
 
+        PriceReloadEvent event = new PriceReloadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
         try {
             String json = Files.readString(file, StandardCharsets.UTF_8);
             JsonObject root = GSON.fromJson(json, JsonObject.class);
             if (root == null) return;
 
+            Map<IdentifierCompat.Id, PriceEntry> prices = new LinkedHashMap<>();
             for (Map.Entry<String, JsonElement> e : root.entrySet()) {
                 IdentifierCompat.Id id = IdentifierCompat.tryParse(e.getKey());
                 if (id == null) continue;
@@ -80,9 +100,19 @@ public final class PriceRegistry {
                         getLong(obj, "unit_sell", 0L)
                 ));
             }
+            catalog = new Catalog(prices);
+            success = true;
             LOGGER.info("[EconomyCraft] Loaded {} prices from {}", prices.size(), file.getFileName());
         } catch (Exception ex) {
-            LOGGER.error("[EconomyCraft] Failed to load prices.json", ex);
+            EconomyMetrics.PRICE_RELOAD_FAILURES.increment();
+            LOGGER.error("[EconomyCraft] Failed to load prices.json, keeping the previous prices", ex);
+        } finally {
+            EconomyMetrics.PRICE_RELOAD_TIME.recordSince(start);
+            if (event.shouldCommit()) {
+                event.prices = catalog.table.size();
+                event.success = success;
+                event.commit();
+            }
         }
     }
 
@@ -117,11 +147,43 @@ public final class PriceRegistry {
 
     public ResolvedPrice resolve(ItemStack stack) {
         if (stack == null || stack.isEmpty()) return null;
-        for (IdentifierCompat.Id key : resolvePriceKeys(stack)) {
-            PriceEntry p = prices.get(key);
-            if (p != null) return new ResolvedPrice(key, p);
+        EconomyMetrics.PRICE_LOOKUPS.increment();
+        Catalog c = catalog;
+        Item item = stack.getItem();
+        ResolvedPrice rp;
+        if (isPotionLike(stack)) {
+            PotionContents contents = stack.get(DataComponents.POTION_CONTENTS);
+            PotionKey key = new PotionKey(item, contents != null ? contents.potion().orElse(null) : null);
+            rp = c.potionCache.get(key);
+            if (rp == null) {
+                rp = resolveUncached(c, stack);
+                c.potionCache.put(key, rp);
+            }
+        } else if (item == Items.ENCHANTED_BOOK) {
+            ItemEnchantments stored = stack.getOrDefault(DataComponents.STORED_ENCHANTMENTS, ItemEnchantments.EMPTY);
+            rp = c.bookCache.get(stored);
+            if (rp == null) {
+                rp = resolveUncached(c, stack);
+                c.bookCache.put(stored, rp);
+            }
+        } else {
+            rp = c.itemCache.get(item);
+            if (rp == null) {
+                rp = resolveUncached(c, stack);
+                c.itemCache.put(item, rp);
+            }
         }
-        return null;
+        return rp == NO_PRICE ? null : rp;
+    }
+
+    private static ResolvedPrice resolveUncached(Catalog c, ItemStack stack) {
+        EconomyMetrics.PRICE_CACHE_MISSES.increment();
+        IdentifierCompat.Id key = c.table.firstPriced(resolvePriceKeys(stack));
+        return key != null ? new ResolvedPrice(key, c.table.get(key)) : NO_PRICE;
+    }
+
+    private static boolean isPotionLike(ItemStack stack) {
+        return stack.is(Items.POTION) || stack.is(Items.SPLASH_POTION) || stack.is(Items.LINGERING_POTION) || stack.is(Items.TIPPED_ARROW);
     }
 
     public PriceEntry get(ItemStack stack) {
@@ -130,47 +192,42 @@ public final class PriceRegistry {
     }
 
     public Collection<String> buyCategories() {
-        Set<String> out = new LinkedHashSet<>();
-        for (PriceEntry p : prices.values()) {
-            if (p.unitBuy() > 0 && p.category() != null) out.add(p.category());
-        }
-        return out;
+        return catalog.table.buyCategories();
     }
 
     public List<String> buyTopCategories() {
-        Set<String> out = new LinkedHashSet<>();
-        for (PriceEntry p : prices.values()) {
-            if (p.unitBuy() <= 0 || p.category() == null) continue;
-            int dot = p.category().indexOf('.');
-            out.add(dot > 0 ? p.category().substring(0, dot) : p.category());
-        }
-        return new ArrayList<>(out);
+        return catalog.table.topCategories();
     }
 
     public List<String> buySubcategories(String topCategory) {
-        Set<String> out = new LinkedHashSet<>();
-        String root = topCategory.toLowerCase(Locale.ROOT) + ".";
-        for (PriceEntry p : prices.values()) {
-            if (p.unitBuy() > 0 && p.category() != null && p.category().toLowerCase(Locale.ROOT).startsWith(root)) {
-                out.add(p.category().substring(root.length()));
-            }
-        }
-        return new ArrayList<>(out);
+        return catalog.table.subcategories(topCategory);
     }
 
     public List<PriceEntry> buyableByCategory(String category) {
-        List<PriceEntry> out = new ArrayList<>();
-        for (PriceEntry p : prices.values()) {
-            if (p.unitBuy() > 0 && category.equalsIgnoreCase(p.category())) out.add(p);
+        return catalog.table.buyableByCategory(category);
+    }
+
+    /**
+     * The price table (with its buy views) plus the stack-to-price resolution caches (plain items by
+     * Item, potions by potion holder, enchanted books by stored enchantments; misses cached as NO_PRICE).
+     */
+    private static final class Catalog {
+        final PriceTable<IdentifierCompat.Id, PriceEntry> table;
+
+        final Map<Item, ResolvedPrice> itemCache = new ConcurrentHashMap<>();
+        final Map<PotionKey, ResolvedPrice> potionCache = new ConcurrentHashMap<>();
+        final Map<ItemEnchantments, ResolvedPrice> bookCache = new ConcurrentHashMap<>();
+
+        Catalog(Map<IdentifierCompat.Id, PriceEntry> prices) {
+            this.table = new PriceTable<>(prices);
         }
-        return out;
     }
 
     private static List<IdentifierCompat.Id> resolvePriceKeys(ItemStack stack) {
         List<IdentifierCompat.Id> out = new ArrayList<>();
         IdentifierCompat.Id itemId = IdentifierCompat.wrap(BuiltInRegistries.ITEM.getKey(stack.getItem()));
 
-        if (stack.is(Items.POTION) || stack.is(Items.SPLASH_POTION) || stack.is(Items.LINGERING_POTION) || stack.is(Items.TIPPED_ARROW)) {
+        if (isPotionLike(stack)) {
             IdentifierCompat.Id potionId = readPotionId(stack);
             out.addAll(buildVirtualPotionKeys(stack, potionId != null ? potionId : IdentifierCompat.withDefaultNamespace("water")));
         }
@@ -250,5 +307,6 @@ public final class PriceRegistry {
     private static int getInt(JsonObject obj, String k, int f) { return obj.has(k) ? obj.get(k).getAsInt() : f; }
     private static long getLong(JsonObject obj, String k, long f) { return obj.has(k) ? obj.get(k).getAsLong() : f; }
 
-    public record PriceEntry(IdentifierCompat.Id id, String category, int stack, long unitBuy, long unitSell) {}
+    public record PriceEntry(IdentifierCompat.Id id, String category, int stack, long unitBuy, long unitSell)
+            implements PriceTable.Priced {}
 }
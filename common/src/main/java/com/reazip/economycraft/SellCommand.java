@@ -13,6 +13,7 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.Container;
 import net.minecraft.world.item.ItemStack;
 
 import java.util.HashMap;
@@ -53,7 +54,7 @@ public final class SellCommand {
         PriceRegistry prices = manager.getPrices();
 
         ResolvedPrice resolved = prices.resolve(hand);
-        Long unitSell = prices.getUnitSell(hand);
+        Long unitSell = resolved != null && resolved.entry().unitSell() > 0 ? resolved.entry().unitSell() : null;
         if (resolved == null || unitSell == null) {
             source.sendFailure(Component.literal("Dit item kan niet worden verkocht.").withStyle(ChatFormatting.RED));
             return 0;
@@ -119,7 +120,7 @@ public final class SellCommand {
         EconomyManager manager = EconomyCraft.getManager(server);
         PriceRegistry prices = manager.getPrices();
         ResolvedPrice resolved = prices.resolve(hand);
-        Long unitSell = prices.getUnitSell(hand);
+        Long unitSell = resolved != null && resolved.entry().unitSell() > 0 ? resolved.entry().unitSell() : null;
         if (resolved == null || unitSell == null) {
             source.sendFailure(Component.literal("Dit item kan niet worden verkocht.").withStyle(ChatFormatting.RED));
             return 0;
@@ -215,7 +216,11 @@ public final class SellCommand {
     }
 
     private static int countMatchingSellable(ServerPlayer player, PriceRegistry prices, IdentifierCompat.Id key) {
-        var inv = player.getInventory();
+        return countMatchingSellable(player.getInventory(), player.getOffhandItem(), prices, key);
+    }
+
+    /** Items in the 36 main slots plus the offhand that sell under {@code key}; the scan behind /sell all. */
+    public static int countMatchingSellable(Container inv, ItemStack offhand, PriceRegistry prices, IdentifierCompat.Id key) {
         int total = 0;
         for (int i = 0; i < 36; i++) {
             ItemStack stack = inv.getItem(i);
@@ -223,7 +228,6 @@ public final class SellCommand {
                 total += stack.getCount();
             }
         }
-        ItemStack offhand = player.getOffhandItem();
         if (isMatchingSellable(prices, offhand, key)) {
             total += offhand.getCount();
         }
@@ -263,7 +267,7 @@ public final class SellCommand {
         if (prices.isSellBlockedByDamage(stack)) return false;
         if (prices.isSellBlockedByContents(stack)) return false;
         ResolvedPrice rp = prices.resolve(stack);
-        return rp != null && key.equals(rp.key()) && prices.getUnitSell(stack) != null;
+        return rp != null && key.equals(rp.key()) && rp.entry().unitSell() > 0;
     }
 
     private static Long safeMultiply(long value, int count) {
@@ -0,0 +1,35 @@
+package com.reazip.economycraft.data;
+
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.RegistryOps;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** ItemStacks inside {@link NbtRecordFile} records, written with the vanilla NBT I/O. */
+public final class NbtStacks {
+    private NbtStacks() {}
+
+    public static RegistryOps<Tag> ops(HolderLookup.Provider provider) {
+        return RegistryOps.create(NbtOps.INSTANCE, provider);
+    }
+
+    public static void write(ItemStack stack, RegistryOps<Tag> ops, DataOutput out) throws IOException {
+        CompoundTag root = new CompoundTag();
+        ItemStack.OPTIONAL_CODEC.encodeStart(ops, stack).result().ifPresent(tag -> root.put("stack", tag));
+        NbtIo.write(root, out);
+    }
+
+    public static ItemStack read(RegistryOps<Tag> ops, DataInput in) throws IOException {
+        Tag tag = NbtIo.read(in, NbtAccounter.unlimitedHeap()).get("stack");
+        if (tag == null) return ItemStack.EMPTY;
+        return ItemStack.OPTIONAL_CODEC.parse(ops, tag).result().orElse(ItemStack.EMPTY);
+    }
+}
@@ -4,35 +4,74 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.mojang.logging.LogUtils;
 import com.mojang.serialization.JsonOps;
+import com.reazip.economycraft.DeliveryInbox;
+import com.reazip.economycraft.EconomyConfig;
+import com.reazip.economycraft.EconomyMetrics;
+import com.reazip.economycraft.core.ListingStore;
+import com.reazip.economycraft.data.AtomicFiles;
+import com.reazip.economycraft.data.BackgroundWriter;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
+import com.reazip.economycraft.data.StoreFiles;
+import com.reazip.economycraft.data.StreamingJson;
+import com.reazip.economycraft.jfr.SaveEvent;
+import net.minecraft.core.HolderLookup;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.RegistryOps;
 import com.reazip.economycraft.util.IdentifierCompat;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Item;
+import org.slf4j.Logger;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
-/** Manages order requests and deliveries. */
+/** Manages order requests. Safe to call from any thread. */
 public class OrderManager {
+    private static final Logger LOGGER = LogUtils.getLogger();
     private static final Gson GSON = new Gson();
-    private final MinecraftServer server;
+    private final HolderLookup.Provider registries;
+    // The file of the configured storage format, and the other format's file to convert from.
     private final Path file;
-    private final Map<Integer, OrderRequest> requests = new HashMap<>();
-    private final Map<UUID, List<ItemStack>> deliveries = new HashMap<>();
-    private int nextId = 1;
-    private final List<Runnable> listeners = new ArrayList<>();
+    private final Path otherFile;
+    private final boolean nbt;
+    private final ListingStore<OrderRequest> requests = new ListingStore<>();
+    // Deliveries from an old orders.json; written back on every save until the delivery inbox has them on disk.
+    private volatile Map<UUID, List<ItemStack>> legacyDeliveries = Map.of();
+    private final Object saveLock = new Object();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    private final BackgroundWriter<Snapshot> writer;
+    // Encoded JSON reused while the record instance is unchanged; writer thread only.
+    private Map<Integer, Encoded<OrderRequest, JsonObject>> encodedRequests = new HashMap<>();
+    private Map<Integer, Encoded<OrderRequest, byte[]>> encodedBinary = new HashMap<>();
+    private final AtomicLong recordsEncoded = new AtomicLong();
+    private final AtomicLong recordsReused = new AtomicLong();
 
     public OrderManager(MinecraftServer server) {
-        this.server = server;
-        Path dir = server.getFile("config/economycraft");
-        Path dataDir = dir.resolve("data");
+        this(server.getFile("config/economycraft/data"), server.registryAccess());
+    }
+
+    /** Reads and writes the order files in {@code dataDir}; used without a server by the load simulator. */
+    public OrderManager(Path dataDir, HolderLookup.Provider registries) {
+        this.registries = registries;
         try { Files.createDirectories(dataDir); } catch (IOException ignored) {}
-        this.file = dataDir.resolve("orders.json");
+        this.nbt = EconomyConfig.get().nbtStorage();
+        this.file = dataDir.resolve(nbt ? "orders.dat" : "orders.json");
+        this.otherFile = dataDir.resolve(nbt ? "orders.json" : "orders.dat");
+        this.writer = new BackgroundWriter<>("Orders", Math.max(0L, EconomyConfig.get().ordersSaveWindowMs),
+                EconomyMetrics.timed(SaveEvent.recorded("orders", this::write, s -> s.requests().size()),
+                        EconomyMetrics.ORDER_SAVE_TIME, EconomyMetrics.ORDER_SAVE_FAILURES));
         load();
     }
 
@@ -45,129 +84,213 @@ public class OrderManager {
     }
 
     public void addRequest(OrderRequest r) {
-        r.id = nextId++;
+        r.id = requests.allocateId();
         requests.put(r.id, r);
-        notifyListeners();
+        EconomyMetrics.ORDER_REQUESTS_ADDED.increment();
+        notifyListeners(r.id);
+        save();
+    }
+
+    /** Swaps in a changed copy of a live request (e.g. after a partial fill), keeping its id. */
+    public boolean replaceRequest(OrderRequest updated) {
+        if (!requests.replace(updated.id, updated)) return false;
+        notifyListeners(updated.id);
         save();
+        return true;
     }
 
     public OrderRequest removeRequest(int id) {
         OrderRequest r = requests.remove(id);
         if (r != null) {
-            notifyListeners();
+            notifyListeners(id);
             save();
         }
         return r;
     }
 
-    public void addDelivery(UUID player, ItemStack stack) {
-        deliveries.computeIfAbsent(player, k -> new ArrayList<>()).add(stack);
+    /** The deliveries loaded from an old orders.json. */
+    public Map<UUID, List<ItemStack>> legacyDeliveries() {
+        return legacyDeliveries;
+    }
+
+    /** Rewrites orders.json without the old deliveries; call once the delivery inbox has saved them. */
+    public void dropLegacyDeliveries() {
+        if (legacyDeliveries.isEmpty()) return;
+        legacyDeliveries = Map.of();
         save();
     }
 
-    /** Returns deliveries for the player without removing them. */
-    public List<ItemStack> getDeliveries(UUID player) {
-        return deliveries.computeIfAbsent(player, k -> new ArrayList<>());
+    public void load() {
+        Path source = StoreFiles.source(file, otherFile);
+        if (source == null) return;
+        long start = System.nanoTime();
+        try {
+            if (source.getFileName().toString().endsWith(".dat")) {
+                loadBinary(source);
+            } else {
+                loadJson(source);
+            }
+            LOGGER.info("[EconomyCraft] Loaded {} order requests from {} in {} ms",
+                    requests.size(), source.getFileName(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load {}", source, e);
+            return;
+        }
+        if (source == otherFile) convert();
     }
 
-    public void removeDelivery(UUID player, ItemStack stack) {
-        List<ItemStack> list = deliveries.get(player);
-        if (list != null) {
-            list.remove(stack);
-            if (list.isEmpty()) deliveries.remove(player);
-            save();
+    /** Writes the data loaded from the other format's file and retires that file once the new one is on disk. */
+    private void convert() {
+        save();
+        try {
+            writer.flushOrThrow();
+            StoreFiles.retire(otherFile);
+            LOGGER.info("[EconomyCraft] Converted {} to {}", otherFile.getFileName(), file.getFileName());
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to convert {} to {}", otherFile.getFileName(), file.getFileName(), e);
         }
     }
 
-    public List<ItemStack> claimDeliveries(UUID player) {
-        List<ItemStack> list = deliveries.remove(player);
-        if (list != null) save();
-        return list;
+    private void loadJson(Path source) throws IOException {
+        boolean parallel = StreamingJson.worthParallel(source);
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
+        Map<UUID, List<ItemStack>> deliveries = new HashMap<>();
+        StreamingJson.readObject(source, (name, in) -> {
+            switch (name) {
+                case "nextId" -> requests.setNextId(in.nextInt());
+                case "requests" -> {
+                    for (OrderRequest r : StreamingJson.readArray(in,
+                            o -> OrderRequest.load(o, registries), parallel)) {
+                        requests.put(r.id, r);
+                    }
+                }
+                case "deliveries" -> StreamingJson.readMapOfArrays(in, o -> decodeLegacyDelivery(o, ops), parallel,
+                        (key, list) -> deliveries.put(UUID.fromString(key), list));
+                default -> in.skipValue();
+            }
+        });
+        legacyDeliveries = Map.copyOf(deliveries);
+        if (!legacyDeliveries.isEmpty()) {
+            LOGGER.info("[EconomyCraft] Found legacy deliveries for {} players in {}", legacyDeliveries.size(), source.getFileName());
+        }
     }
 
-    public boolean hasDeliveries(UUID player) {
-        List<ItemStack> list = deliveries.get(player);
-        return list != null && !list.isEmpty();
+    private void loadBinary(Path source) throws IOException {
+        var ops = NbtStacks.ops(registries);
+        var contents = NbtRecordFile.read(source, in -> OrderRequest.read(in, ops));
+        requests.setNextId((int) contents.meta());
+        for (OrderRequest r : contents.records()) requests.put(r.id, r);
     }
 
-    public void load() {
-        if (Files.exists(file)) {
-            try {
-                String json = Files.readString(file);
-                JsonObject root = GSON.fromJson(json, JsonObject.class);
-                nextId = root.get("nextId").getAsInt();
-                for (var el : root.getAsJsonArray("requests")) {
-                    OrderRequest r = OrderRequest.load(el.getAsJsonObject(), server.registryAccess());
-                    requests.put(r.id, r);
-                }
-                JsonObject dObj = root.getAsJsonObject("deliveries");
-                for (String key : dObj.keySet()) {
-                    UUID id = UUID.fromString(key);
-                    List<ItemStack> list = new ArrayList<>();
-                    for (var sEl : dObj.getAsJsonArray(key)) {
-                        JsonObject o = sEl.getAsJsonObject();
-                        ItemStack stack = ItemStack.EMPTY;
-                        if (o.has("stack")) {
-                            stack = ItemStack.CODEC.parse(RegistryOps.create(JsonOps.INSTANCE, server.registryAccess()), o.get("stack")).result().orElse(ItemStack.EMPTY);
-                        } else {
-                            String itemId = o.get("item").getAsString();
-                            int count = o.get("count").getAsInt();
-                            IdentifierCompat.Id rl = IdentifierCompat.tryParse(itemId);
-                            if (rl != null) {
-                                java.util.Optional<Item> opt = IdentifierCompat.registryGetOptional(BuiltInRegistries.ITEM, rl);
-
-                                if (opt.isPresent()) {
-                                    Item item = opt.get();
-                                    stack = new ItemStack(item, count);
-                                }
-                            }
-                        }
-                        if (!stack.isEmpty()) list.add(stack);
-                    }
-                    deliveries.put(id, list);
+    private static ItemStack decodeLegacyDelivery(JsonObject o, RegistryOps<JsonElement> ops) {
+        ItemStack stack = ItemStack.EMPTY;
+        if (o.has("stack")) {
+            stack = ItemStack.CODEC.parse(ops, o.get("stack")).result().orElse(ItemStack.EMPTY);
+        } else {
+            String itemId = o.get("item").getAsString();
+            int count = o.get("count").getAsInt();
+            IdentifierCompat.Id rl = IdentifierCompat.tryParse(itemId);
+            if (rl != null) {
+                java.util.Optional<Item> opt = IdentifierCompat.registryGetOptional(BuiltInRegistries.ITEM, rl);
+
+                if (opt.isPresent()) {
+                    Item item = opt.get();
+                    stack = new ItemStack(item, count);
                 }
-            } catch (Exception ignored) {}
+            }
         }
+        return stack.isEmpty() ? null : stack;
     }
 
+    /**
+     * Queues the current order book for writing. Requests are never mutated after they are added, so the
+     * snapshot shares them; all saves inside the configured window collapse into one write.
+     */
     public void save() {
+        // Capture and submit together so a snapshot taken earlier can never replace a newer one.
+        synchronized (saveLock) {
+            writer.submit(new Snapshot(requests.nextId(), requests.snapshot(), legacyDeliveries));
+        }
+    }
+
+    /** Writes any pending state before the server stops. */
+    public void shutdown() {
+        writer.shutdown();
+        LOGGER.info("[EconomyCraft] Orders: {} saves requested, {} written, {} records encoded, {} reused",
+                savesRequested(), savesWritten(), recordsEncoded.get(), recordsReused.get());
+    }
+
+    public long savesRequested() { return writer.submittedCount(); }
+    public long savesWritten() { return writer.writtenCount(); }
+    public long savesAvoided() { return savesRequested() - savesWritten(); }
+
+    private void write(Snapshot snapshot) throws IOException {
+        if (nbt) {
+            writeBinary(snapshot);
+            return;
+        }
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
         JsonObject root = new JsonObject();
-        root.addProperty("nextId", nextId);
+        root.addProperty("nextId", snapshot.nextId());
+
+        Map<Integer, Encoded<OrderRequest, JsonObject>> requestCache = new HashMap<>();
         JsonArray reqArr = new JsonArray();
-        for (OrderRequest r : requests.values()) {
-            reqArr.add(r.save(server.registryAccess()));
+        for (OrderRequest r : snapshot.requests()) {
+            Encoded<OrderRequest, JsonObject> enc = encodedRequests.get(r.id);
+            if (enc != null && enc.source() == r) {
+                recordsReused.incrementAndGet();
+            } else {
+                enc = new Encoded<>(r, r.save(registries));
+                recordsEncoded.incrementAndGet();
+            }
+            requestCache.put(r.id, enc);
+            reqArr.add(enc.encoded());
         }
         root.add("requests", reqArr);
-        JsonObject dObj = new JsonObject();
-        for (Map.Entry<UUID, List<ItemStack>> e : deliveries.entrySet()) {
-            JsonArray arr = new JsonArray();
-            for (ItemStack s : e.getValue()) {
-                JsonObject o = new JsonObject();
-                o.addProperty("item", BuiltInRegistries.ITEM.getKey(s.getItem()).toString());
-                o.addProperty("count", s.getCount());
-                JsonElement stackEl = ItemStack.CODEC.encodeStart(RegistryOps.create(JsonOps.INSTANCE, server.registryAccess()), s).result().orElse(new JsonObject());
-                o.add("stack", stackEl);
-                arr.add(o);
+        if (!snapshot.deliveries().isEmpty()) {
+            root.add("deliveries", DeliveryInbox.toJson(snapshot.deliveries(), registries));
+        }
+
+        encodedRequests = requestCache;
+        AtomicFiles.writeString(file, GSON.toJson(root));
+    }
+
+    private void writeBinary(Snapshot snapshot) throws IOException {
+        var ops = NbtStacks.ops(registries);
+        Map<Integer, Encoded<OrderRequest, byte[]>> cache = new HashMap<>();
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+        DataOutputStream scratchOut = new DataOutputStream(scratch);
+        List<byte[]> records = new ArrayList<>(snapshot.requests().size());
+        for (OrderRequest r : snapshot.requests()) {
+            Encoded<OrderRequest, byte[]> enc = encodedBinary.get(r.id);
+            if (enc != null && enc.source() == r) {
+                recordsReused.incrementAndGet();
+            } else {
+                scratch.reset();
+                r.write(scratchOut, ops);
+                enc = new Encoded<>(r, scratch.toByteArray());
+                recordsEncoded.incrementAndGet();
             }
-            dObj.add(e.getKey().toString(), arr);
+            cache.put(r.id, enc);
+            records.add(enc.encoded());
         }
-        root.add("deliveries", dObj);
-        try {
-            Files.writeString(file, GSON.toJson(root));
-        } catch (IOException ignored) {}
+        encodedBinary = cache;
+        NbtRecordFile.write(file, snapshot.nextId(), records, (bytes, out) -> out.write(bytes));
     }
 
-    public void addListener(Runnable run) {
-        listeners.add(run);
+    private record Snapshot(int nextId, List<OrderRequest> requests, Map<UUID, List<ItemStack>> deliveries) {}
+    private record Encoded<S, E>(S source, E encoded) {}
+
+    /** Listeners receive the id of the request that was added, changed or removed. */
+    public void addListener(IntConsumer listener) {
+        listeners.add(listener);
     }
 
-    public void removeListener(Runnable run) {
-        listeners.remove(run);
+    public void removeListener(IntConsumer listener) {
+        listeners.remove(listener);
     }
 
-    private void notifyListeners() {
-        for (Runnable r : new ArrayList<>(listeners)) {
-            r.run();
-        }
+    private void notifyListeners(int requestId) {
+        listeners.forEach(l -> l.accept(requestId));
     }
 }
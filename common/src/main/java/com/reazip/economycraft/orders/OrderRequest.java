@@ -3,13 +3,19 @@ package com.reazip.economycraft.orders;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mojang.serialization.JsonOps;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.Tag;
 import net.minecraft.resources.RegistryOps;
 import com.reazip.economycraft.util.IdentifierCompat;
 import net.minecraft.world.item.ItemStack;
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 public class OrderRequest {
@@ -50,4 +56,23 @@ public class OrderRequest {
         }
         return r;
     }
+
+    /** Binary form for the {@code nbt} storage format. */
+    public void write(DataOutput out, RegistryOps<Tag> ops) throws IOException {
+        out.writeInt(id);
+        NbtRecordFile.writeUuid(requester, out);
+        out.writeLong(price);
+        out.writeInt(amount);
+        NbtStacks.write(item == null ? ItemStack.EMPTY : item, ops, out);
+    }
+
+    public static OrderRequest read(DataInput in, RegistryOps<Tag> ops) throws IOException {
+        OrderRequest r = new OrderRequest();
+        r.id = in.readInt();
+        r.requester = NbtRecordFile.readUuid(in);
+        r.price = in.readLong();
+        r.amount = in.readInt();
+        r.item = NbtStacks.read(ops, in);
+        return r;
+    }
 }
@@ -2,7 +2,11 @@ package com.reazip.economycraft.orders;
 
 import com.reazip.economycraft.EconomyCraft;
 import com.reazip.economycraft.EconomyConfig;
+import com.reazip.economycraft.DeliveryInbox;
 import com.reazip.economycraft.EconomyManager;
+import com.reazip.economycraft.EconomyMetrics;
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.jfr.MenuRenderEvent;
 import com.reazip.economycraft.util.ChatCompat;
 import com.reazip.economycraft.util.IdentityCompat;
 import net.minecraft.ChatFormatting;
@@ -26,6 +30,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.IntConsumer;
 
 public final class OrdersUi {
     private OrdersUi() {}
@@ -100,7 +105,7 @@ public static void open(ServerPlayer player, EconomyManager eco) {
         private final SimpleContainer container = new SimpleContainer(54);
         private int page = 0;
         private final int navRowStart = 45;
-        private final Runnable listener = this::updatePage;
+        private final IntConsumer listener = id -> updatePage();
 
         RequestMenu(int id, Inventory inv, OrderManager orders, EconomyManager eco, ServerPlayer viewer) {
             super(MenuType.GENERIC_9x6, id);
@@ -132,6 +137,10 @@ public static void open(ServerPlayer player, EconomyManager eco) {
         }
 
         private void updatePage() {
+            MenuRenderEvent.timed("orders", page, () -> requests.size(), EconomyMetrics.ORDERS_UI_RENDER_TIME, this::renderPage);
+        }
+
+        private void renderPage() {
             requests = new ArrayList<>(orders.getRequests());
             container.clearContent();
             int start = page * 45;
@@ -288,23 +297,18 @@ public static void open(ServerPlayer player, EconomyManager eco) {
                         sp.sendSystemMessage(Component.literal("Je hebt niet genoeg items.").withStyle(ChatFormatting.RED));
                     } else {
                         long cost = current.price;
-                        if (parent.eco.getBalance(current.requester, true) < cost) {
+                        long tax = Math.round(cost * EconomyConfig.get().taxRate);
+                        Transaction tx = Transaction.create()
+                                .debit(current.requester, cost)
+                                .credit(sp.getUUID(), cost - tax);
+                        if (!parent.eco.transfer(tx)) {
                             sp.sendSystemMessage(Component.literal("Aanvrager heeft onvoldoende saldo.").withStyle(ChatFormatting.RED));
                         } else {
                             parent.removeItems(sp, current.item, current.amount);
-                            long tax = Math.round(cost * EconomyConfig.get().taxRate);
-                            parent.eco.removeMoney(current.requester, cost);
-                            parent.eco.addMoney(sp.getUUID(), cost - tax);
                             parent.orders.removeRequest(current.id);
 
-                            int rem = current.amount;
-                            while (rem > 0) {
-                                int count = Math.min(current.item.getMaxStackSize(), rem);
-                                ItemStack delivery = current.item.copy();
-                                delivery.setCount(count);
-                                parent.orders.addDelivery(current.requester, delivery);
-                                rem -= count;
-                            }
+                            parent.eco.getDeliveries().add(current.requester, current.item.copyWithCount(current.amount));
+                            EconomyMetrics.ORDERS_FULFILLED.increment();
 
                             sp.sendSystemMessage(Component.literal("Verzoek voltooid! Je ontving " + EconomyCraft.formatMoney(cost - tax))
                                     .withStyle(ChatFormatting.GREEN));
@@ -410,9 +414,12 @@ public static void open(ServerPlayer player, EconomyManager eco) {
         }
 
         private void updatePage() {
+            MenuRenderEvent.timed("orders.claim", page, () -> items.size(), EconomyMetrics.ORDERS_UI_RENDER_TIME, this::renderPage);
+        }
+
+        private void renderPage() {
             items.clear();
-            items.addAll(eco.getOrders().getDeliveries(owner));
-            items.addAll(eco.getShop().getDeliveries(owner));
+            items.addAll(eco.getDeliveries().view(owner));
             container.clearContent();
             
             int start = page * 45;
@@ -434,22 +441,22 @@ public static void open(ServerPlayer player, EconomyManager eco) {
                 container.setItem(navRowStart + 6, next);
             }
             container.setItem(navRowStart, createBalanceItem(eco, owner));
+
+            if (!items.isEmpty()) {
+                ItemStack claimAll = new ItemStack(Items.CHEST);
+                claimAll.set(DataComponents.CUSTOM_NAME, Component.literal("Alles claimen").withStyle(s -> s.withItalic(false).withColor(ChatFormatting.GREEN)));
+                container.setItem(navRowStart + 4, claimAll);
+            }
         }
 
         @Override
         public void clicked(int slot, int dragType, ClickType type, Player player) {
             if (type == ClickType.PICKUP && slot >= 0 && slot < 54) {
                 if (slot < 45) {
-                    ItemStack stack = container.getItem(slot);
-                    if (!stack.isEmpty()) {
-                        if (player.getInventory().add(stack.copy())) {
-                            eco.getOrders().removeDelivery(owner, stack);
-                            eco.getShop().removeDelivery(owner, stack);
-                            updatePage();
-                        } else {
-                            ((ServerPlayer) player).sendSystemMessage(Component.literal("Je inventaris zit vol!").withStyle(ChatFormatting.RED));
-                        }
-                    }
+                    claim(player, slot);
+                    return;
+                } else if (slot == navRowStart + 4) {
+                    claimAll((ServerPlayer) player);
                     return;
                 } else if (slot == navRowStart + 2 && page > 0) {
                     page--; updatePage(); return;
@@ -464,19 +471,39 @@ public static void open(ServerPlayer player, EconomyManager eco) {
         
         @Override
         public ItemStack quickMoveStack(Player player, int idx) {
-            if (idx < 45) {
-                ItemStack stack = container.getItem(idx);
-                if (!stack.isEmpty()) {
-                    if (player.getInventory().add(stack.copy())) {
-                        eco.getOrders().removeDelivery(owner, stack);
-                        eco.getShop().removeDelivery(owner, stack);
-                        updatePage();
-                    } else {
-                        ((ServerPlayer) player).sendSystemMessage(Component.literal("Je inventaris zit vol!").withStyle(ChatFormatting.RED));
-                    }
+            if (idx < 45) claim(player, idx);
+            return ItemStack.EMPTY;
+        }
+
+        private void claimAll(ServerPlayer player) {
+            DeliveryInbox.ClaimResult result = eco.getDeliveries().claimInto(owner, player.getInventory());
+            if (result.itemsClaimed() == 0) {
+                if (result.itemsLeft() > 0) {
+                    player.sendSystemMessage(Component.literal("Je inventaris zit vol!").withStyle(ChatFormatting.RED));
                 }
+                return;
             }
-            return ItemStack.EMPTY;
+            String msg = result.itemsClaimed() + " items geclaimd";
+            if (result.itemsLeft() > 0) msg += ", " + result.itemsLeft() + " wachten nog (inventaris vol)";
+            player.sendSystemMessage(Component.literal(msg + ".").withStyle(result.itemsLeft() > 0 ? ChatFormatting.YELLOW : ChatFormatting.GREEN));
+            page = 0;
+            updatePage();
+        }
+
+        /** Moves the stack shown in {@code slot} into the player's inventory if it fits. */
+        private void claim(Player player, int slot) {
+            ItemStack stack = container.getItem(slot);
+            if (stack.isEmpty()) return;
+            if (player.getInventory().getFreeSlot() < 0 && player.getInventory().getSlotWithRemainingSpace(stack) < 0) {
+                ((ServerPlayer) player).sendSystemMessage(Component.literal("Je inventaris zit vol!").withStyle(ChatFormatting.RED));
+                return;
+            }
+            ItemStack taken = eco.getDeliveries().take(owner, page * 45 + slot, stack);
+            if (!taken.isEmpty() && !player.getInventory().add(taken)) {
+                // Whatever did not fit goes back into the inbox.
+                eco.getDeliveries().add(owner, taken);
+            }
+            updatePage();
         }
     }
 }
@@ -0,0 +1,90 @@
+package com.reazip.economycraft.shop;
+
+import com.reazip.economycraft.util.IdentifierCompat;
+import com.reazip.economycraft.util.OrderStatisticTree;
+import net.minecraft.core.registries.BuiltInRegistries;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Shop listings kept sorted in every {@link ListingSort} at once, so a page is an O(log n) slice
+ * instead of a copy and sort of the whole market.
+ */
+public class ListingIndex {
+    /** Sort keys captured when the listing is added; later name changes must not reorder a live tree. */
+    private record Entry(ShopListing listing, String sellerName, String itemId) {
+        int id() { return listing.id; }
+        long price() { return listing.price; }
+    }
+
+    private static final Comparator<Entry> BY_ID = Comparator.comparingInt(Entry::id);
+
+    private final Map<ListingSort, Comparator<Entry>> orders = new EnumMap<>(ListingSort.class);
+    private final Map<ListingSort, OrderStatisticTree<Entry>> trees = new EnumMap<>(ListingSort.class);
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Function<UUID, String> sellerNames;
+
+    ListingIndex(Function<UUID, String> sellerNames) {
+        this.sellerNames = sellerNames;
+        orders.put(ListingSort.ID, BY_ID);
+        orders.put(ListingSort.PRICE, Comparator.comparingLong(Entry::price).thenComparing(BY_ID));
+        orders.put(ListingSort.SELLER, Comparator.comparing(Entry::sellerName).thenComparing(BY_ID));
+        orders.put(ListingSort.ITEM, Comparator.comparing(Entry::itemId).thenComparing(BY_ID));
+        orders.forEach((sort, order) -> trees.put(sort, new OrderStatisticTree<>(order)));
+    }
+
+    public synchronized void add(ShopListing listing) {
+        remove(listing.id);
+        String seller = listing.seller == null ? "" : sellerNames.apply(listing.seller);
+        String item = IdentifierCompat.wrap(BuiltInRegistries.ITEM.getKey(listing.item.getItem())).asString();
+        Entry e = new Entry(listing, seller == null ? "" : seller.toLowerCase(Locale.ROOT), item);
+        entries.put(listing.id, e);
+        for (OrderStatisticTree<Entry> tree : trees.values()) tree.add(e);
+    }
+
+    public synchronized void remove(int listingId) {
+        Entry e = entries.remove(listingId);
+        if (e == null) return;
+        for (OrderStatisticTree<Entry> tree : trees.values()) tree.remove(e);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        trees.values().forEach(OrderStatisticTree::clear);
+    }
+
+    /** Up to {@code limit} listings starting at zero-based position {@code offset} in the given order. */
+    public synchronized List<ShopListing> page(ListingSort sort, int offset, int limit) {
+        return trees.get(sort).range(offset, limit).stream().map(Entry::listing).toList();
+    }
+
+    /** The given listings (e.g. search hits) in the given order; ids that are not indexed are skipped. */
+    public synchronized List<ShopListing> sorted(ListingSort sort, Collection<Integer> listingIds) {
+        List<Entry> hits = new ArrayList<>(listingIds.size());
+        for (int id : listingIds) {
+            Entry e = entries.get(id);
+            if (e != null) hits.add(e);
+        }
+        hits.sort(orders.get(sort));
+        return hits.stream().map(Entry::listing).toList();
+    }
+
+    /** Zero-based position of the listing in the given order, or -1 if it is not indexed. */
+    public synchronized int position(ListingSort sort, int listingId) {
+        Entry e = entries.get(listingId);
+        return e == null ? -1 : trees.get(sort).rank(e);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
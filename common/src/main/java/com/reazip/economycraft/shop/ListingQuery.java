@@ -0,0 +1,60 @@
+package com.reazip.economycraft.shop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Parsed {@code /ah search} input: free-text words plus optional facets
+ * {@code item:<id>}, {@code cat:<category>}, {@code min:<price>}, {@code max:<price>} and {@code seller:<name>}.
+ */
+public record ListingQuery(String text, List<String> terms, String itemId, String category,
+                           long minPrice, long maxPrice, UUID seller) {
+
+    /** Parses the raw query; throws IllegalArgumentException with a player-facing message on bad input. */
+    public static ListingQuery parse(String raw, Function<String, UUID> sellerLookup) {
+        List<String> terms = new ArrayList<>();
+        String itemId = null, category = null;
+        long min = 0, max = Long.MAX_VALUE;
+        UUID seller = null;
+
+        for (String word : raw.trim().split("\\s+")) {
+            if (word.isEmpty()) continue;
+            int colon = word.indexOf(':');
+            String facet = colon > 0 ? word.substring(0, colon).toLowerCase(Locale.ROOT) : "";
+            String value = colon > 0 ? word.substring(colon + 1) : word;
+            switch (facet) {
+                case "item" -> itemId = value.contains(":") ? value.toLowerCase(Locale.ROOT)
+                        : "minecraft:" + value.toLowerCase(Locale.ROOT);
+                case "cat" -> category = value.toLowerCase(Locale.ROOT);
+                case "min" -> min = parsePrice(value);
+                case "max" -> max = parsePrice(value);
+                case "seller" -> {
+                    seller = sellerLookup.apply(value);
+                    if (seller == null) throw new IllegalArgumentException("Onbekende verkoper: " + value);
+                }
+                default -> terms.addAll(ListingSearch.tokenize(word));
+            }
+        }
+        if (min > max) throw new IllegalArgumentException("Minimumprijs is hoger dan maximumprijs.");
+        return new ListingQuery(raw.trim(), List.copyOf(terms), itemId, category, min, max, seller);
+    }
+
+    private static long parsePrice(String value) {
+        try {
+            long price = Long.parseLong(value);
+            if (price < 0) throw new NumberFormatException();
+            return price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ongeldige prijs: " + value);
+        }
+    }
+
+    /** Checks the facets that are not answered by the inverted index. */
+    boolean matchesFacets(ShopListing listing) {
+        if (listing.price < minPrice || listing.price > maxPrice) return false;
+        return seller == null || seller.equals(listing.seller);
+    }
+}
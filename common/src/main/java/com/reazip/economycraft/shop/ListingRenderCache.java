@@ -0,0 +1,70 @@
+package com.reazip.economycraft.shop;
+
+import com.reazip.economycraft.EconomyConfig;
+import com.reazip.economycraft.EconomyCraft;
+import com.reazip.economycraft.util.IdentityCompat;
+import net.minecraft.ChatFormatting;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.component.ItemLore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Decorated shop display stacks (price and seller lore), built once per listing and shared by all viewers. */
+public class ListingRenderCache {
+    private static final ChatFormatting LABEL_PRIMARY_COLOR = ChatFormatting.GOLD;
+    private static final ChatFormatting LABEL_SECONDARY_COLOR = ChatFormatting.AQUA;
+    private static final ChatFormatting VALUE_COLOR = ChatFormatting.DARK_PURPLE;
+
+    private final MinecraftServer server;
+    private final Map<Integer, ItemStack> displays = new ConcurrentHashMap<>();
+
+    ListingRenderCache(MinecraftServer server) {
+        this.server = server;
+    }
+
+    /** The cached display stack; callers must copy it before handing it to a container. */
+    public ItemStack display(ShopListing listing) {
+        return displays.computeIfAbsent(listing.id, id -> render(listing));
+    }
+
+    public void invalidate(int listingId) {
+        displays.remove(listingId);
+    }
+
+    /** Drops everything, e.g. after a reload changed tax rates or player names. */
+    public void clear() {
+        displays.clear();
+    }
+
+    private ItemStack render(ShopListing l) {
+        ItemStack display = l.item.copy();
+        long tax = Math.round(l.price * EconomyConfig.get().taxRate);
+        display.set(DataComponents.LORE, new ItemLore(List.of(
+                createPriceLore(l.price, tax),
+                labeledValue("Verkoper", sellerName(l), LABEL_SECONDARY_COLOR))));
+        return display;
+    }
+
+    private String sellerName(ShopListing l) {
+        ServerPlayer sellerPlayer = server.getPlayerList().getPlayer(l.seller);
+        if (sellerPlayer != null) return IdentityCompat.of(sellerPlayer).name();
+        return EconomyCraft.getManager(server).getBestName(l.seller);
+    }
+
+    private static Component createPriceLore(long price, long tax) {
+        StringBuilder value = new StringBuilder(EconomyCraft.formatMoney(price));
+        if (tax > 0) value.append(" (+").append(EconomyCraft.formatMoney(tax)).append(" belasting)");
+        return labeledValue("Prijs", value.toString(), LABEL_PRIMARY_COLOR);
+    }
+
+    private static Component labeledValue(String label, String value, ChatFormatting labelColor) {
+        return Component.literal(label + ": ").withStyle(s -> s.withItalic(false).withColor(labelColor))
+                .append(Component.literal(value).withStyle(s -> s.withItalic(false).withColor(VALUE_COLOR)));
+    }
+}
@@ -0,0 +1,150 @@
+package com.reazip.economycraft.shop;
+
+import com.reazip.economycraft.util.IdentifierCompat;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Inverted index over listing item ids, hover names and price categories, updated as listings come and go.
+ * Free-text words match tokens by prefix; item and category facets match exactly.
+ */
+public class ListingSearch {
+    /** What was indexed for one listing, so it can be unlinked again without recomputing. */
+    private record Doc(ShopListing listing, String itemId, String category, Set<String> tokens) {}
+
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final TreeMap<String, Set<Integer>> byToken = new TreeMap<>();
+    private final Map<String, Set<Integer>> byItem = new HashMap<>();
+    private final Map<String, Set<Integer>> byCategory = new HashMap<>();
+    private final Function<ItemStack, String> categories;
+
+    ListingSearch(Function<ItemStack, String> categories) {
+        this.categories = categories;
+    }
+
+    public synchronized void add(ShopListing listing) {
+        remove(listing.id);
+        String itemId = IdentifierCompat.wrap(BuiltInRegistries.ITEM.getKey(listing.item.getItem())).asString();
+        String category = categories.apply(listing.item);
+        category = category == null ? null : category.toLowerCase(Locale.ROOT);
+
+        Set<String> tokens = new HashSet<>(tokenize(itemId));
+        tokens.addAll(tokenize(listing.item.getHoverName().getString()));
+        if (category != null) tokens.addAll(tokenize(category));
+
+        Doc doc = new Doc(listing, itemId, category, tokens);
+        docs.put(listing.id, doc);
+        for (String t : tokens) link(byToken, t, listing.id);
+        link(byItem, itemId, listing.id);
+        // "tools.pickaxes" is found by cat:tools as well as cat:tools.pickaxes.
+        if (category != null) {
+            for (int dot = category.indexOf('.'); dot > 0; dot = category.indexOf('.', dot + 1)) {
+                link(byCategory, category.substring(0, dot), listing.id);
+            }
+            link(byCategory, category, listing.id);
+        }
+    }
+
+    public synchronized void remove(int listingId) {
+        Doc doc = docs.remove(listingId);
+        if (doc == null) return;
+        for (String t : doc.tokens()) unlink(byToken, t, listingId);
+        unlink(byItem, doc.itemId(), listingId);
+        if (doc.category() != null) {
+            String category = doc.category();
+            for (int dot = category.indexOf('.'); dot > 0; dot = category.indexOf('.', dot + 1)) {
+                unlink(byCategory, category.substring(0, dot), listingId);
+            }
+            unlink(byCategory, category, listingId);
+        }
+    }
+
+    public synchronized void clear() {
+        docs.clear();
+        byToken.clear();
+        byItem.clear();
+        byCategory.clear();
+    }
+
+    /** Re-derives every listing's tokens and category, e.g. after the price table was reloaded. */
+    public synchronized void rebuild(Collection<ShopListing> listings) {
+        clear();
+        listings.forEach(this::add);
+    }
+
+    /** Ids of all listings matching the query, in no particular order. */
+    public synchronized Set<Integer> find(ListingQuery query) {
+        List<Set<Integer>> required = new ArrayList<>();
+        if (query.itemId() != null) required.add(byItem.getOrDefault(query.itemId(), Set.of()));
+        if (query.category() != null) required.add(byCategory.getOrDefault(query.category(), Set.of()));
+        for (String term : query.terms()) required.add(prefixMatches(term));
+
+        Set<Integer> result;
+        if (required.isEmpty()) {
+            result = new LinkedHashSet<>(docs.keySet());
+        } else {
+            // Intersect starting from the smallest set.
+            required.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            result = new LinkedHashSet<>(required.get(0));
+            for (int i = 1; i < required.size() && !result.isEmpty(); i++) result.retainAll(required.get(i));
+        }
+        result.removeIf(id -> !query.matchesFacets(docs.get(id).listing()));
+        return result;
+    }
+
+    /** Whether a single listing satisfies the query; used to decide if an open result view is affected. */
+    public synchronized boolean matches(ListingQuery query, int listingId) {
+        Doc doc = docs.get(listingId);
+        if (doc == null || !query.matchesFacets(doc.listing())) return false;
+        if (query.itemId() != null && !query.itemId().equals(doc.itemId())) return false;
+        if (query.category() != null && (doc.category() == null
+                || !(doc.category().equals(query.category()) || doc.category().startsWith(query.category() + ".")))) {
+            return false;
+        }
+        for (String term : query.terms()) {
+            if (doc.tokens().stream().noneMatch(t -> t.startsWith(term))) return false;
+        }
+        return true;
+    }
+
+    private Set<Integer> prefixMatches(String prefix) {
+        Set<Integer> out = new HashSet<>();
+        for (Map.Entry<String, Set<Integer>> e : byToken.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) break;
+            out.addAll(e.getValue());
+        }
+        return out;
+    }
+
+    /** Lower-cased alphanumeric words; "minecraft:diamond_sword" gives minecraft, diamond and sword. */
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        for (String part : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!part.isEmpty()) out.add(part);
+        }
+        return out;
+    }
+
+    private static void link(Map<String, Set<Integer>> map, String key, int id) {
+        map.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+    }
+
+    private static void unlink(Map<String, Set<Integer>> map, String key, int id) {
+        Set<Integer> ids = map.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+}
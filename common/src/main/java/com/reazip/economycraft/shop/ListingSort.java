@@ -0,0 +1,24 @@
+package com.reazip.economycraft.shop;
+
+/** Orderings offered by the shop window; every one falls back to listing id so the order is total. */
+public enum ListingSort {
+    ID("Datum"),
+    PRICE("Prijs"),
+    SELLER("Verkoper"),
+    ITEM("Item");
+
+    private final String label;
+
+    ListingSort(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public ListingSort next() {
+        ListingSort[] all = values();
+        return all[(ordinal() + 1) % all.length];
+    }
+}
@@ -3,7 +3,9 @@ package com.reazip.economycraft.shop;
 import com.mojang.logging.LogUtils;
 import com.reazip.economycraft.EconomyCraft;
 import com.reazip.economycraft.EconomyManager;
+import com.reazip.economycraft.EconomyMetrics;
 import com.reazip.economycraft.PriceRegistry;
+import com.reazip.economycraft.jfr.MenuRenderEvent;
 import com.reazip.economycraft.util.ChatCompat;
 import com.reazip.economycraft.util.IdentityCompat;
 import com.reazip.economycraft.util.ProfileComponentCompat;
@@ -192,6 +194,10 @@ public final class ServerShopUi {
         }
 
 private void updatePage() {
+    MenuRenderEvent.timed("servershop", page, () -> categories.size(), EconomyMetrics.SERVER_SHOP_UI_RENDER_TIME, this::renderPage);
+}
+
+private void renderPage() {
     container.clearContent();
     java.util.Arrays.fill(slotToIndex, -1);
     int start = page * itemsPerPage;
@@ -303,6 +309,10 @@ private void updatePage() {
         }
 
         private void updatePage() {
+            MenuRenderEvent.timed("servershop.subcategories", page, () -> subcategories.size(), EconomyMetrics.SERVER_SHOP_UI_RENDER_TIME, this::renderPage);
+        }
+
+        private void renderPage() {
             container.clearContent();
             int start = page * itemsPerPage;
             int totalPages = (int) Math.ceil(subcategories.size() / (double) itemsPerPage);
@@ -394,6 +404,10 @@ private void updatePage() {
         }
         
         private void updatePage() {
+            MenuRenderEvent.timed("servershop.items", page, () -> entries.size(), EconomyMetrics.SERVER_SHOP_UI_RENDER_TIME, this::renderPage);
+        }
+
+        private void renderPage() {
             container.clearContent();
             if (category.equalsIgnoreCase("kits")) {
                 ItemStack starterKit = new ItemStack(Items.DIAMOND_CHESTPLATE);
@@ -665,7 +679,7 @@ private void handleKitPurchase() {
             while (remaining > 0) {
                 int give = Math.min(base.getMaxStackSize(), remaining);
                 ItemStack stack = base.copyWithCount(give);
-                if (!viewer.getInventory().add(stack)) eco.getShop().addDelivery(viewer.getUUID(), stack);
+                if (!viewer.getInventory().add(stack)) eco.getDeliveries().add(viewer.getUUID(), stack);
                 remaining -= give;
             }
         }
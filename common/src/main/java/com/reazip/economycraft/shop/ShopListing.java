@@ -2,10 +2,16 @@ package com.reazip.economycraft.shop;
 
 import com.google.gson.JsonObject;
 import com.mojang.serialization.JsonOps;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
 import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.Tag;
 import net.minecraft.resources.RegistryOps;
 import net.minecraft.world.item.ItemStack;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 /** Listing for one item in the shop. */
@@ -55,4 +61,21 @@ public class ShopListing {
         
         return l;
     }
+
+    /** Binary form for the {@code nbt} storage format. */
+    public void write(DataOutput out, RegistryOps<Tag> ops) throws IOException {
+        out.writeInt(id);
+        NbtRecordFile.writeUuid(seller, out);
+        out.writeLong(price);
+        NbtStacks.write(item, ops, out);
+    }
+
+    public static ShopListing read(DataInput in, RegistryOps<Tag> ops) throws IOException {
+        ShopListing l = new ShopListing();
+        l.id = in.readInt();
+        l.seller = NbtRecordFile.readUuid(in);
+        l.price = in.readLong();
+        l.item = NbtStacks.read(ops, in);
+        return l;
+    }
 }
@@ -4,39 +4,91 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.mojang.logging.LogUtils;
 import com.mojang.serialization.JsonOps;
+import com.reazip.economycraft.DeliveryInbox;
+import com.reazip.economycraft.EconomyConfig;
 import com.reazip.economycraft.EconomyCraft;
 import com.reazip.economycraft.EconomyManager;
+import com.reazip.economycraft.EconomyMetrics;
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.core.ListingStore;
+import com.reazip.economycraft.data.AtomicFiles;
+import com.reazip.economycraft.data.BackgroundWriter;
+import com.reazip.economycraft.data.NbtRecordFile;
+import com.reazip.economycraft.data.NbtStacks;
+import com.reazip.economycraft.data.StoreFiles;
+import com.reazip.economycraft.data.StreamingJson;
+import com.reazip.economycraft.jfr.SaveEvent;
 import com.reazip.economycraft.util.IdentityCompat;
 import net.minecraft.ChatFormatting;
+import net.minecraft.core.HolderLookup;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.RegistryOps;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-/** Manages shop listings and deliveries. */
+/** Manages shop listings. */
 public class ShopManager {
+    private static final Logger LOGGER = LogUtils.getLogger();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final long SAVE_DELAY_MS = 1000L;
+    // Null when running without a server (load simulator); buying and rendering need one.
+    @Nullable
     private final MinecraftServer server;
+    private final HolderLookup.Provider registries;
+    // The file of the configured storage format, and the other format's file to convert from.
     private final Path file;
+    private final Path otherFile;
+    private final boolean nbt;
     
-    private final Map<Integer, ShopListing> listings = new ConcurrentHashMap<>();
-    private final Map<UUID, List<ItemStack>> deliveries = new ConcurrentHashMap<>();
-    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
-    
-    private int nextId = 1;
+    // Iterated by id so saves list listings oldest first.
+    private final ListingStore<ShopListing> listings = new ListingStore<>();
+    private final ListingIndex index;
+    private final ListingSearch search;
+    // Deliveries from an old shop.json; written back on every save until the delivery inbox has them on disk.
+    private volatile Map<UUID, List<ItemStack>> legacyDeliveries = Map.of();
+    private final List<Consumer<ListingChange>> listeners = new CopyOnWriteArrayList<>();
+    private final ListingRenderCache renderCache;
+    private final Object saveLock = new Object();
+    private final BackgroundWriter<Snapshot> writer = new BackgroundWriter<>("Shop", SAVE_DELAY_MS,
+            EconomyMetrics.timed(SaveEvent.recorded("shop", this::write, s -> s.listings().size()),
+                    EconomyMetrics.SHOP_SAVE_TIME, EconomyMetrics.SHOP_SAVE_FAILURES));
+
+    public ShopManager(MinecraftServer server, Function<UUID, String> sellerNames, Function<ItemStack, String> categories) {
+        this(server, server.getFile("config/economycraft/data"), server.registryAccess(), sellerNames, categories);
+    }
+
+    /**
+     * Listings, indexes and saving in {@code dataDir} without a server; used by the load simulator.
+     * {@link #buyListing} and the render cache are unavailable.
+     */
+    public ShopManager(Path dataDir, HolderLookup.Provider registries,
+                       Function<UUID, String> sellerNames, Function<ItemStack, String> categories) {
+        this(null, dataDir, registries, sellerNames, categories);
+    }
 
-    public ShopManager(MinecraftServer server) {
+    private ShopManager(@Nullable MinecraftServer server, Path dataDir, HolderLookup.Provider registries,
+                        Function<UUID, String> sellerNames, Function<ItemStack, String> categories) {
         this.server = server;
-        this.file = server.getFile("config/economycraft/data/shop.json");
+        this.registries = registries;
+        this.nbt = EconomyConfig.get().nbtStorage();
+        this.file = dataDir.resolve(nbt ? "shop.dat" : "shop.json");
+        this.otherFile = dataDir.resolve(nbt ? "shop.json" : "shop.dat");
+        this.renderCache = new ListingRenderCache(server);
+        this.index = new ListingIndex(sellerNames);
+        this.search = new ListingSearch(categories);
         
         try { 
             Files.createDirectories(file.getParent()); 
@@ -66,20 +118,24 @@ public class ShopManager {
             }
         }
 
-        if (eco.removeMoney(buyer.getUUID(), listing.price)) {
+        Transaction tx = Transaction.create().debit(buyer.getUUID(), listing.price);
+        if (listing.seller != null) tx.credit(listing.seller, listing.price);
+
+        if (eco.transfer(tx)) {
             if (listing.seller != null) {
-                eco.addMoney(listing.seller, listing.price);
                 notifySellerSale(listing, buyer);
             }
 
-            addDelivery(buyer.getUUID(), listing.item);
+            eco.getDeliveries().add(buyer.getUUID(), listing.item);
             removeListing(listingId);
+            EconomyMetrics.SHOP_PURCHASES.increment();
 
             buyer.sendSystemMessage(Component.literal("Aankoop succesvol! Gebruik /claim om je items te ontvangen.")
                     .withStyle(ChatFormatting.GREEN));
             return true;
         }
 
+        if (listing.seller != null) eco.releaseDailySell(listing.seller, listing.price);
         return false;
     }
 
@@ -87,133 +143,212 @@ public class ShopManager {
         return listings.values();
     }
 
+    public ListingIndex getIndex() {
+        return index;
+    }
+
+    public ListingSearch getSearch() {
+        return search;
+    }
+
+    /** Rebuilds the search index, e.g. after the price table changed the categories. */
+    public void reindexSearch() {
+        search.rebuild(listings.values());
+    }
+
+    public ListingRenderCache getRenderCache() {
+        return renderCache;
+    }
+
     public ShopListing getListing(int id) {
         return listings.get(id);
     }
 
     public void addListing(ShopListing listing) {
-        listing.id = nextId++;
+        listing.id = listings.allocateId();
         listings.put(listing.id, listing);
-        saveAndNotify();
+        EconomyMetrics.SHOP_LISTINGS_ADDED.increment();
+        index.add(listing);
+        search.add(listing);
+        saveAndNotify(changeOf(listing.id));
+    }
+
+    /** Swaps in a changed copy of a live listing (e.g. after a partial fill), keeping its id and place in time. */
+    public boolean replaceListing(ShopListing updated) {
+        if (!listings.replace(updated.id, updated)) return false;
+        index.add(updated);
+        search.add(updated);
+        renderCache.invalidate(updated.id);
+        saveAndNotify(changeOf(updated.id));
+        return true;
     }
 
     public ShopListing removeListing(int id) {
         ShopListing l = listings.remove(id);
-        if (l != null) saveAndNotify();
+        if (l != null) {
+            ListingChange change = changeOf(id);
+            index.remove(id);
+            search.remove(id);
+            renderCache.invalidate(id);
+            saveAndNotify(change);
+        }
         return l;
     }
 
-    public void addDelivery(UUID player, ItemStack stack) {
-        if (stack.isEmpty()) return;
-        deliveries.computeIfAbsent(player, k -> new ArrayList<>()).add(stack.copy());
-        save();
-    }
-
-    public List<ItemStack> getDeliveries(UUID player) {
-        return deliveries.getOrDefault(player, new ArrayList<>());
-    }
-
-    public List<ItemStack> claimDeliveries(UUID player) {
-        List<ItemStack> list = deliveries.remove(player);
-        if (list != null) save();
-        return list;
-    }
-    
-    public void removeDelivery(UUID player, ItemStack stack) {
-        List<ItemStack> list = deliveries.get(player);
-        if (list != null) {
-            list.remove(stack);
-            if (list.isEmpty()) deliveries.remove(player);
-            save();
-        }
+    /** The deliveries loaded from an old shop.json. */
+    public Map<UUID, List<ItemStack>> legacyDeliveries() {
+        return legacyDeliveries;
     }
 
-    public boolean hasDeliveries(UUID player) {
-        List<ItemStack> list = deliveries.get(player);
-        return list != null && !list.isEmpty();
+    /** Rewrites shop.json without the old deliveries; call once the delivery inbox has saved them. */
+    public void dropLegacyDeliveries() {
+        if (legacyDeliveries.isEmpty()) return;
+        legacyDeliveries = Map.of();
+        save();
     }
 
-    private void saveAndNotify() {
-        notifyListeners();
+    private void saveAndNotify(ListingChange change) {
+        notifyListeners(change);
         save();
     }
 
     // --- File IO ---
 
     public void load() {
-        if (!Files.exists(file)) return;
+        Path source = StoreFiles.source(file, otherFile);
+        if (source == null) return;
+        long start = System.nanoTime();
+
+        listings.clear();
+        index.clear();
+        search.clear();
+        renderCache.clear();
+        legacyDeliveries = Map.of();
+
         try {
-            JsonObject root = GSON.fromJson(Files.readString(file), JsonObject.class);
-            if (root == null) return;
-
-            nextId = root.has("nextId") ? root.get("nextId").getAsInt() : 1;
-            listings.clear();
-            deliveries.clear();
-
-            if (root.has("listings")) {
-                for (var el : root.getAsJsonArray("listings")) {
-                    ShopListing l = ShopListing.load(el.getAsJsonObject(), server.registryAccess());
-                    listings.put(l.id, l);
-                }
+            List<ShopListing> loaded = source.getFileName().toString().endsWith(".dat")
+                    ? loadBinary(source)
+                    : loadJson(source);
+            for (ShopListing l : loaded) {
+                listings.put(l.id, l);
+                index.add(l);
+                search.add(l);
             }
+            LOGGER.info("[EconomyCraft] Loaded {} shop listings from {} in {} ms",
+                    listings.size(), source.getFileName(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load {}", source, e);
+            return;
+        }
+        if (source == otherFile) convert();
+    }
 
-            if (root.has("deliveries")) {
-                JsonObject dObj = root.getAsJsonObject("deliveries");
-                var ops = RegistryOps.create(JsonOps.INSTANCE, server.registryAccess());
-
-                for (String key : dObj.keySet()) {
-                    UUID id = UUID.fromString(key);
-                    List<ItemStack> list = new ArrayList<>();
-                    for (var sEl : dObj.getAsJsonArray(key)) {
-                        JsonObject o = sEl.getAsJsonObject();
-                        ItemStack stack = ItemStack.CODEC.parse(ops, o.get("stack"))
-                                .result()
-                                .orElse(ItemStack.EMPTY);
-                        
-                        if (!stack.isEmpty()) list.add(stack);
-                    }
-                    deliveries.put(id, list);
-                }
+    /** Writes the data loaded from the other format's file and retires that file once the new one is on disk. */
+    private void convert() {
+        save();
+        try {
+            writer.flushOrThrow();
+            StoreFiles.retire(otherFile);
+            LOGGER.info("[EconomyCraft] Converted {} to {}", otherFile.getFileName(), file.getFileName());
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to convert {} to {}", otherFile.getFileName(), file.getFileName(), e);
+        }
+    }
+
+    private List<ShopListing> loadJson(Path source) throws IOException {
+        boolean parallel = StreamingJson.worthParallel(source);
+        var ops = RegistryOps.create(JsonOps.INSTANCE, registries);
+        List<ShopListing> loaded = new ArrayList<>();
+        Map<UUID, List<ItemStack>> deliveries = new HashMap<>();
+        StreamingJson.readObject(source, (name, in) -> {
+            switch (name) {
+                case "nextId" -> listings.setNextId(in.nextInt());
+                case "listings" -> loaded.addAll(StreamingJson.readArray(in,
+                        o -> ShopListing.load(o, registries), parallel));
+                case "deliveries" -> StreamingJson.readMapOfArrays(in,
+                        o -> ItemStack.CODEC.parse(ops, o.get("stack")).result().filter(st -> !st.isEmpty()).orElse(null),
+                        parallel,
+                        (key, list) -> deliveries.put(UUID.fromString(key), list));
+                default -> in.skipValue();
             }
-        } catch (Exception ignored) {} 
+        });
+        legacyDeliveries = Map.copyOf(deliveries);
+        if (!legacyDeliveries.isEmpty()) {
+            LOGGER.info("[EconomyCraft] Found legacy deliveries for {} players in {}", legacyDeliveries.size(), source.getFileName());
+        }
+        return loaded;
     }
 
+    private List<ShopListing> loadBinary(Path source) throws IOException {
+        var ops = NbtStacks.ops(registries);
+        var contents = NbtRecordFile.read(source, in -> ShopListing.read(in, ops));
+        listings.setNextId((int) contents.meta());
+        return contents.records();
+    }
+
+    /**
+     * Captures the current state and hands it to the background writer. Listings are never mutated after
+     * they are added, so they are shared.
+     */
     public void save() {
-        try {
-            Files.createDirectories(file.getParent());
-            JsonObject root = new JsonObject();
-            root.addProperty("nextId", nextId);
+        // Capture and submit together so a snapshot taken earlier can never replace a newer one.
+        synchronized (saveLock) {
+            writer.submit(new Snapshot(listings.nextId(), listings.snapshot(), legacyDeliveries));
+        }
+    }
 
-            JsonArray listArr = new JsonArray();
-            for (ShopListing l : listings.values()) {
-                listArr.add(l.save(server.registryAccess()));
-            }
-            root.add("listings", listArr);
-
-            JsonObject dObj = new JsonObject();
-            var ops = RegistryOps.create(JsonOps.INSTANCE, server.registryAccess());
-
-            for (var entry : deliveries.entrySet()) {
-                JsonArray arr = new JsonArray();
-                for (ItemStack s : entry.getValue()) {
-                    JsonObject o = new JsonObject();
-                    o.add("stack", ItemStack.CODEC.encodeStart(ops, s).result().orElse(new JsonObject()));
-                    arr.add(o);
-                }
-                dObj.add(entry.getKey().toString(), arr);
-            }
-            root.add("deliveries", dObj);
+    /** Writes any pending state before the server stops. */
+    public void shutdown() {
+        writer.shutdown();
+    }
 
-            Files.writeString(file, GSON.toJson(root));
-        } catch (IOException ignored) {}
+    private void write(Snapshot snapshot) throws IOException {
+        if (nbt) {
+            var ops = NbtStacks.ops(registries);
+            NbtRecordFile.write(file, snapshot.nextId(), snapshot.listings(), (l, out) -> l.write(out, ops));
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        JsonObject root = new JsonObject();
+        root.addProperty("nextId", snapshot.nextId());
+
+        JsonArray listArr = new JsonArray();
+        for (ShopListing l : snapshot.listings()) {
+            listArr.add(l.save(registries));
+        }
+        root.add("listings", listArr);
+        if (!snapshot.deliveries().isEmpty()) {
+            root.add("deliveries", DeliveryInbox.toJson(snapshot.deliveries(), registries));
+        }
+
+        AtomicFiles.writeString(file, GSON.toJson(root));
+    }
+
+    private record Snapshot(int nextId, List<ShopListing> listings, Map<UUID, List<ItemStack>> deliveries) {}
+
+    /**
+     * A listing that was added or removed, with its position in every sort order (after adding, before removing),
+     * so open windows can tell whether their page moved.
+     */
+    public record ListingChange(int listingId, int[] positions) {
+        public int position(ListingSort sort) {
+            return positions[sort.ordinal()];
+        }
+    }
+
+    private ListingChange changeOf(int listingId) {
+        ListingSort[] sorts = ListingSort.values();
+        int[] positions = new int[sorts.length];
+        for (ListingSort sort : sorts) positions[sort.ordinal()] = index.position(sort, listingId);
+        return new ListingChange(listingId, positions);
     }
 
-    public void addListener(Runnable run) { listeners.add(run); }
-    public void removeListener(Runnable run) { listeners.remove(run); }
-    private void notifyListeners() { listeners.forEach(Runnable::run); }
+    public void addListener(Consumer<ListingChange> listener) { listeners.add(listener); }
+    public void removeListener(Consumer<ListingChange> listener) { listeners.remove(listener); }
+    private void notifyListeners(ListingChange change) { listeners.forEach(l -> l.accept(change)); }
 
     public void notifySellerSale(ShopListing listing, ServerPlayer buyer) {
-        if (listing == null || buyer == null || listing.seller == null) return;
+        if (server == null || listing == null || buyer == null || listing.seller == null) return;
         ServerPlayer seller = server.getPlayerList().getPlayer(listing.seller);
         if (seller == null) return;
 
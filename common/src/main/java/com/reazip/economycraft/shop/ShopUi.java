@@ -3,8 +3,10 @@ package com.reazip.economycraft.shop;
 import com.reazip.economycraft.EconomyCraft;
 import com.reazip.economycraft.EconomyConfig;
 import com.reazip.economycraft.EconomyManager;
+import com.reazip.economycraft.EconomyMetrics;
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.jfr.MenuRenderEvent;
 import com.reazip.economycraft.util.ChatCompat;
-import com.reazip.economycraft.util.IdentityCompat;
 import net.minecraft.ChatFormatting;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.network.chat.ClickEvent;
@@ -22,20 +24,21 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import net.minecraft.world.item.component.ItemLore;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Consumer;
 
 public final class ShopUi {
     private ShopUi() {}
 
-    private static final ChatFormatting LABEL_PRIMARY_COLOR = ChatFormatting.GOLD;
-    private static final ChatFormatting LABEL_SECONDARY_COLOR = ChatFormatting.AQUA;
-    private static final ChatFormatting VALUE_COLOR = ChatFormatting.DARK_PURPLE;
     private static final ChatFormatting BALANCE_NAME_COLOR = ChatFormatting.GOLD;
     private static final ChatFormatting BALANCE_VALUE_COLOR = ChatFormatting.GOLD;
 
     public static void open(ServerPlayer player, ShopManager shop) {
+        open(player, shop, null);
+    }
+
+    /** Opens the shop showing only listings that match {@code query}, or everything when it is null. */
+    public static void open(ServerPlayer player, ShopManager shop, ListingQuery query) {
     player.openMenu(new MenuProvider() {
         @Override 
         public Component getDisplayName() { 
@@ -45,7 +48,7 @@ public final class ShopUi {
         
         @Override 
         public AbstractContainerMenu createMenu(int id, Inventory inv, Player p) {
-            return new ShopMenu(id, inv, shop, (ServerPlayer) p);
+            return new ShopMenu(id, inv, shop, (ServerPlayer) p, query);
         }
     });
 }
@@ -68,12 +71,6 @@ public final class ShopUi {
         });
     }
 
-private static Component createPriceLore(long price, long tax) {
-    StringBuilder value = new StringBuilder(EconomyCraft.formatMoney(price));
-    if (tax > 0) value.append(" (+").append(EconomyCraft.formatMoney(tax)).append(" belasting)");
-    return labeledValue("Prijs", value.toString(), LABEL_PRIMARY_COLOR);
-}
-
 private static ItemStack createBalanceItem(ServerPlayer player) {
     ItemStack gold = new ItemStack(Items.GOLD_INGOT);
     var server = player.level().getServer();
@@ -94,24 +91,34 @@ private static ItemStack createBalanceItem(ServerPlayer player) {
     return gold;
 }
 
-    private static Component labeledValue(String label, String value, ChatFormatting labelColor) {
-        return Component.literal(label + ": ").withStyle(s -> s.withItalic(false).withColor(labelColor))
-                .append(Component.literal(value).withStyle(s -> s.withItalic(false).withColor(VALUE_COLOR)));
-    }
-
     private static class ShopMenu extends AbstractContainerMenu {
         private final ShopManager shop;
         private final ServerPlayer viewer;
-        private List<ShopListing> listings = new ArrayList<>();
+        // Listings on the current page only.
+        private List<ShopListing> listings = List.of();
+        private ListingSort sort = ListingSort.ID;
+        private int total = 0;
+        // Search filter and its hits in the current sort, or null for the full market.
+        private final ListingQuery query;
+        private List<ShopListing> results;
         private final SimpleContainer container = new SimpleContainer(54);
         private int page = 0;
         private final int navRowStart = 45;
-        private final Runnable listener = this::updatePage;
+        private final Consumer<ShopManager.ListingChange> listener = this::onListingChanged;
 
-        ShopMenu(int id, Inventory inv, ShopManager shop, ServerPlayer viewer) {
+        // What the container currently shows, so updates only touch slots that changed.
+        private final ShopListing[] shown = new ShopListing[45];
+        private boolean shownPrev, shownNext;
+        private long shownBalance = Long.MIN_VALUE;
+        private int shownPage = -1, shownPages = -1, shownTotal = -1;
+        private ListingSort shownSort = null;
+
+        ShopMenu(int id, Inventory inv, ShopManager shop, ServerPlayer viewer, ListingQuery query) {
             super(MenuType.GENERIC_9x6, id);
             this.shop = shop;
             this.viewer = viewer;
+            this.query = query;
+            refreshResults();
             updatePage();
             shop.addListener(listener);
             for (int i = 0; i < 54; i++) {
@@ -130,66 +137,118 @@ private static ItemStack createBalanceItem(ServerPlayer player) {
             }
         }
 
+        /** Re-renders only when the changed listing sits on or before this viewer's page, or the page count moved. */
+        private void onListingChanged(ShopManager.ListingChange change) {
+            if (query != null) {
+                // Removed listings are only known by id; added ones can be checked against the query.
+                boolean affected = results.stream().anyMatch(l -> l.id == change.listingId())
+                        || shop.getSearch().matches(query, change.listingId());
+                if (!affected) return;
+                refreshResults();
+                updatePage();
+                return;
+            }
+            boolean beforePageEnd = change.position(sort) < (page + 1) * 45;
+            if (!beforePageEnd && pageCount(shop.getIndex().size()) == shownPages) return;
+            updatePage();
+        }
+
         private void updatePage() {
-            listings = new ArrayList<>(shop.getListings());
-            container.clearContent();
+            MenuRenderEvent.timed("shop", page, () -> total, EconomyMetrics.SHOP_UI_RENDER_TIME, this::renderPage);
+        }
+
+        private void renderPage() {
+            ListingIndex index = shop.getIndex();
+            ListingRenderCache cache = shop.getRenderCache();
             int start = page * 45;
-            int totalPages = (int) Math.ceil(listings.size() / 45.0);
+            if (query == null) {
+                total = index.size();
+                listings = index.page(sort, start, 45);
+            } else {
+                total = results.size();
+                listings = results.subList(Math.min(start, total), Math.min(start + 45, total));
+            }
+            int totalPages = pageCount(total);
 
             for (int i = 0; i < 45; i++) {
-                int idx = start + i;
-                if (idx >= listings.size()) break;
-                ShopListing l = listings.get(idx);
-                ItemStack display = l.item.copy();
-                
-                var server = viewer.level().getServer();
-                String sellerName;
-                ServerPlayer sellerPlayer = server.getPlayerList().getPlayer(l.seller);
-                if (sellerPlayer != null) {
-                    sellerName = IdentityCompat.of(sellerPlayer).name();
-                } else {
-                    sellerName = EconomyCraft.getManager(server).getBestName(l.seller);
-                }
-
-                long tax = Math.round(l.price * EconomyConfig.get().taxRate);
-                display.set(DataComponents.LORE, new ItemLore(List.of(
-                        createPriceLore(l.price, tax),
-                        labeledValue("Verkoper", sellerName, LABEL_SECONDARY_COLOR))));
-                container.setItem(i, display);
+                ShopListing l = i < listings.size() ? listings.get(i) : null;
+                if (l == shown[i]) continue;
+                shown[i] = l;
+                container.setItem(i, l == null ? ItemStack.EMPTY : cache.display(l).copy());
             }
 
-            if (page > 0) {
-                ItemStack prev = new ItemStack(Items.ARROW);
-                prev.set(DataComponents.CUSTOM_NAME, Component.literal("Vorige pagina").withStyle(s -> s.withItalic(false)));
+            boolean hasPrev = page > 0;
+            if (hasPrev != shownPrev) {
+                shownPrev = hasPrev;
+                ItemStack prev = ItemStack.EMPTY;
+                if (hasPrev) {
+                    prev = new ItemStack(Items.ARROW);
+                    prev.set(DataComponents.CUSTOM_NAME, Component.literal("Vorige pagina").withStyle(s -> s.withItalic(false)));
+                }
                 container.setItem(navRowStart + 3, prev);
             }
 
-            if (start + 45 < listings.size()) {
-                ItemStack next = new ItemStack(Items.ARROW);
-                next.set(DataComponents.CUSTOM_NAME, Component.literal("Volgende pagina").withStyle(s -> s.withItalic(false)));
+            boolean hasNext = start + 45 < total;
+            if (hasNext != shownNext) {
+                shownNext = hasNext;
+                ItemStack next = ItemStack.EMPTY;
+                if (hasNext) {
+                    next = new ItemStack(Items.ARROW);
+                    next.set(DataComponents.CUSTOM_NAME, Component.literal("Volgende pagina").withStyle(s -> s.withItalic(false)));
+                }
                 container.setItem(navRowStart + 5, next);
             }
 
-            container.setItem(navRowStart, createBalanceItem(viewer));
-            
-            ItemStack info = new ItemStack(Items.PAPER);
-            info.set(DataComponents.CUSTOM_NAME, Component.literal("Pagina " + (page + 1) + "/" + Math.max(1, totalPages)).withStyle(s -> s.withItalic(false)));
-            container.setItem(navRowStart + 4, info);
+            long balance = EconomyCraft.getManager(viewer.level().getServer()).getBalance(viewer.getUUID(), true);
+            if (balance != shownBalance) {
+                shownBalance = balance;
+                container.setItem(navRowStart, createBalanceItem(viewer));
+            }
+
+            if (page != shownPage || totalPages != shownPages || (query != null && total != shownTotal)) {
+                shownPage = page;
+                shownPages = totalPages;
+                shownTotal = total;
+                ItemStack info = new ItemStack(Items.PAPER);
+                info.set(DataComponents.CUSTOM_NAME, Component.literal("Pagina " + (page + 1) + "/" + Math.max(1, totalPages)).withStyle(s -> s.withItalic(false)));
+                if (query != null) {
+                    info.set(DataComponents.LORE, new ItemLore(List.of(
+                            Component.literal("Zoeken: " + query.text() + " (" + total + " resultaten)")
+                                    .withStyle(s -> s.withItalic(false).withColor(ChatFormatting.GRAY)))));
+                }
+                container.setItem(navRowStart + 4, info);
+            }
+
+            if (sort != shownSort) {
+                shownSort = sort;
+                ItemStack sortItem = new ItemStack(Items.HOPPER);
+                sortItem.set(DataComponents.CUSTOM_NAME, Component.literal("Sorteren: " + sort.label()).withStyle(s -> s.withItalic(false)));
+                container.setItem(navRowStart + 8, sortItem);
+            }
+        }
+
+        private void refreshResults() {
+            if (query == null) return;
+            results = shop.getIndex().sorted(sort, shop.getSearch().find(query));
+        }
+
+        private static int pageCount(int size) {
+            return (int) Math.ceil(size / 45.0);
         }
 
         @Override public void clicked(int slot, int dragType, ClickType type, Player player) {
             if (type == ClickType.PICKUP && slot >= 0) {
                 if (slot < 45) {
-                    int idx = (page * 45) + slot;
-                    if (idx < listings.size()) {
-                        ShopListing l = listings.get(idx);
+                    if (slot < listings.size()) {
+                        ShopListing l = listings.get(slot);
                         if (l.seller.equals(player.getUUID())) openRemove((ServerPlayer) player, shop, l);
                         else openConfirm((ServerPlayer) player, shop, l);
                         return;
                     }
                 }
                 if (slot == navRowStart + 3 && page > 0) { page--; updatePage(); return; }
-                if (slot == navRowStart + 5 && (page + 1) * 45 < listings.size()) { page++; updatePage(); return; }
+                if (slot == navRowStart + 5 && (page + 1) * 45 < total) { page++; updatePage(); return; }
+                if (slot == navRowStart + 8) { sort = sort.next(); page = 0; refreshResults(); updatePage(); return; }
             }
             super.clicked(slot, dragType, type, player);
         }
@@ -240,17 +299,18 @@ private static ItemStack createBalanceItem(ServerPlayer player) {
                     EconomyManager eco = EconomyCraft.getManager(sp.level().getServer());
                     long total = current.price + Math.round(current.price * EconomyConfig.get().taxRate);
 
-                    if (eco.getBalance(sp.getUUID(), true) < total) {
+                    Transaction tx = Transaction.create().debit(sp.getUUID(), total);
+                    if (current.seller != null) tx.credit(current.seller, current.price);
+
+                    if (!eco.transfer(tx)) {
                         shop.addListing(current); 
                         sp.sendSystemMessage(Component.literal("Onvoldoende saldo.").withStyle(ChatFormatting.RED));
                         sp.closeContainer();
                     } else {
-                        eco.removeMoney(sp.getUUID(), total);
-                        eco.addMoney(current.seller, current.price);
-                        
+                        EconomyMetrics.SHOP_PURCHASES.increment();
                         ItemStack stack = current.item.copy();
                         if (!sp.getInventory().add(stack)) {
-                            shop.addDelivery(sp.getUUID(), stack);
+                            eco.getDeliveries().add(sp.getUUID(), stack);
                             sendClaimMessage(sp);
                         }
                         sp.sendSystemMessage(Component.literal("Item gekocht!").withStyle(ChatFormatting.GREEN));
@@ -306,7 +366,7 @@ private static ItemStack createBalanceItem(ServerPlayer player) {
                     if (removed != null) {
                         ItemStack stack = removed.item.copy();
                         if (!sp.getInventory().add(stack)) {
-                            shop.addDelivery(sp.getUUID(), stack);
+                            EconomyCraft.getManager(sp.level().getServer()).getDeliveries().add(sp.getUUID(), stack);
                             sendClaimMessage(sp);
                         }
                         sp.sendSystemMessage(Component.literal("Item teruggenomen.").withStyle(ChatFormatting.GREEN));
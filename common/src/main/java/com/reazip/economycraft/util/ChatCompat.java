@@ -1,90 +1,61 @@
 package com.reazip.economycraft.util;
 
+import com.mojang.logging.LogUtils;
 import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import com.reazip.economycraft.util.PermissionCompat;
+import org.slf4j.Logger;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * ClickEvent helper for 1.21.x (Fabric/NeoForge).
  * Creates RUN_COMMAND ClickEvents across mapping/API changes.
  */
 public final class ChatCompat {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
     private ChatCompat() {}
 
-    // ---- Caches (filled lazily on first use) --------------------------------
-    private static volatile boolean scanned = false;
+    // Commands sent on join and on /sell all; their events are built once and shared.
+    private static final String[] FIXED_COMMANDS = {"/eco orders claim", "/sell all confirm"};
+
+    /** Resolved on first use: the working ClickEvent shape bound to a plain function, plus the interned events. */
+    private static final class Holder {
+        static final Function<String, ClickEvent> FACTORY = resolveFactory();
+        static final Map<String, ClickEvent> INTERNED = intern();
 
-    private static volatile Method factoryMethod;                 // (String) -> ClickEvent
-    private static volatile Class<?> actionEnumType;              // ClickEvent.Action (or obfuscated)
-    private static volatile Object runCommandEnum;                // RUN_COMMAND constant
-    private static volatile Constructor<?> enumCtorString;        // ClickEvent(Action, String)
-    private static volatile Constructor<?> enumCtorComponent;     // ClickEvent(Action, Component)
-    private static volatile Constructor<?> nestedCtorString;      // ClickEvent$RunCommand(String) or similar
-    private static volatile Constructor<?> nestedCtorComponent;   // ClickEvent$RunCommand(Component) or similar
+        private static Map<String, ClickEvent> intern() {
+            Map<String, ClickEvent> out = new HashMap<>();
+            if (FACTORY == null) return Map.of();
+            for (String cmd : FIXED_COMMANDS) {
+                ClickEvent ev = FACTORY.apply(cmd);
+                if (ev != null) out.put(cmd, ev);
+            }
+            return Map.copyOf(out);
+        }
+    }
 
     /**
      * Build a RUN_COMMAND ClickEvent for the given command string.
      * Returns null if no compatible shape exists.
      */
     public static ClickEvent runCommandEvent(String cmd) {
-        ensureScanned();
-
-        // A) Preferred: static factory (String) -> ClickEvent
-        try {
-            if (factoryMethod != null) {
-                Object ev = factoryMethod.invoke(null, cmd);
-                if (ev instanceof ClickEvent ce && isRunCommand(ce)) {
-                    return ce;
-                }
-            }
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] f1");
-        }
-
-        // B) Ctor with Action enum
-        try {
-            if (runCommandEnum != null) {
-                if (enumCtorString != null) {
-                    Object ev = enumCtorString.newInstance(runCommandEnum, cmd);
-                    if (ev instanceof ClickEvent ce && isRunCommand(ce)) {
-                        return ce;
-                    }
-                }
-                if (enumCtorComponent != null) {
-                    Object ev = enumCtorComponent.newInstance(runCommandEnum, Component.literal(cmd));
-                    if (ev instanceof ClickEvent ce && isRunCommand(ce)) {
-                        return ce;
-                    }
-                }
-            }
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] f2");
-        }
-
-        // C) Nested-class fallback
-        try {
-            if (nestedCtorString != null) {
-                Object ev = nestedCtorString.newInstance(cmd);
-                if (ev instanceof ClickEvent ce && isRunCommand(ce)) {
-                    return ce;
-                }
-            }
-            if (nestedCtorComponent != null) {
-                Object ev = nestedCtorComponent.newInstance(Component.literal(cmd));
-                if (ev instanceof ClickEvent ce && isRunCommand(ce)) {
-                    return ce;
-                }
-            }
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] f3");
-        }
-
-        return null;
+        ClickEvent interned = Holder.INTERNED.get(cmd);
+        if (interned != null) return interned;
+        Function<String, ClickEvent> factory = Holder.FACTORY;
+        return factory == null ? null : factory.apply(cmd);
     }
 
     // ---- Guaranteed fallback ------------------------------------------------
@@ -109,88 +80,106 @@ public final class ChatCompat {
             srv.getCommands().performPrefixedCommand(
                     PermissionCompat.withOwnerPermission(srv.createCommandSourceStack()),
                     line);
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] tw");
+        } catch (Throwable t) {
+            LOGGER.debug("[EconomyCraft] tellraw fallback failed for {}", cmd, t);
         }
     }
 
-    // ---- Scan & helpers -----------------------------------------------------
+    // ---- Shape resolution ---------------------------------------------------
 
-    private static void ensureScanned() {
-        if (scanned) return;
-        synchronized (ChatCompat.class) {
-            if (scanned) return;
-            try {
-                // A) Find public static factory: (String) -> ClickEvent
-                for (Method m : ClickEvent.class.getDeclaredMethods()) {
-                    int mod = m.getModifiers();
-                    if (Modifier.isPublic(mod) && Modifier.isStatic(mod)
-                            && m.getParameterCount() == 1
-                            && m.getParameterTypes()[0] == String.class
-                            && ClickEvent.class.isAssignableFrom(m.getReturnType())) {
-                        factoryMethod = m;
-                        break;
-                    }
+    /**
+     * Tries every known constructor/factory shape once against a probe command and returns
+     * the first one that yields a RUN_COMMAND event, or null if none does.
+     */
+    private static Function<String, ClickEvent> resolveFactory() {
+        List<Function<String, ClickEvent>> candidates = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            // A) Preferred: public static factory (String) -> ClickEvent
+            for (Method m : ClickEvent.class.getDeclaredMethods()) {
+                int mod = m.getModifiers();
+                if (Modifier.isPublic(mod) && Modifier.isStatic(mod)
+                        && m.getParameterCount() == 1
+                        && m.getParameterTypes()[0] == String.class
+                        && ClickEvent.class.isAssignableFrom(m.getReturnType())) {
+                    candidates.add(bind(lookup.unreflect(m), false));
                 }
+            }
 
-                // B) Find Action enum + RUN_COMMAND & match constructors
-                for (Class<?> nested : ClickEvent.class.getDeclaredClasses()) {
-                    if (nested.isEnum()) {
-                        Object rc = enumConstantIgnoreCase(nested, "RUN_COMMAND");
-                        if (rc != null) {
-                            actionEnumType = nested;
-                            runCommandEnum = rc;
-                            break;
-                        }
-                    }
+            // B) Ctor with Action enum: ClickEvent(Action, String) / ClickEvent(Action, Component)
+            Class<?> actionType = null;
+            Object runCommand = null;
+            for (Class<?> nested : ClickEvent.class.getDeclaredClasses()) {
+                Object rc = enumConstantIgnoreCase(nested, "RUN_COMMAND");
+                if (rc != null) {
+                    actionType = nested;
+                    runCommand = rc;
+                    break;
                 }
-
-                for (Constructor<?> c : ClickEvent.class.getDeclaredConstructors()) {
+            }
+            if (actionType != null) {
+                for (Constructor<?> c : ClickEvent.class.getConstructors()) {
                     Class<?>[] p = c.getParameterTypes();
-                    if (p.length == 2 && actionEnumType != null && p[0].isAssignableFrom(actionEnumType)) {
-                        if (p[1] == String.class) enumCtorString = c;
-                        else if (Component.class.isAssignableFrom(p[1])) enumCtorComponent = c;
-                    }
+                    if (p.length != 2 || !p[0].isAssignableFrom(actionType)) continue;
+                    boolean component = Component.class.isAssignableFrom(p[1]);
+                    if (p[1] != String.class && !component) continue;
+                    MethodHandle h = MethodHandles.insertArguments(lookup.unreflectConstructor(c), 0, runCommand);
+                    candidates.add(bind(h, component));
                 }
+            }
 
-                // C) Find nested ClickEvent subclasses that accept (String) / (Component)
-                for (Class<?> nested : ClickEvent.class.getDeclaredClasses()) {
-                    if (!ClickEvent.class.isAssignableFrom(nested)) continue;
-                    try {
-                        Constructor<?> sCtor = nested.getConstructor(String.class);
-                        // Keep only if it actually represents RUN_COMMAND (cheap probe)
-                        Object probe = sCtor.newInstance("/ec probe");
-                        if (probe instanceof ClickEvent ce && isRunCommand(ce)) {
-                            nestedCtorString = sCtor;
-                        }
-                    } catch (NoSuchMethodException ignored) { /* no-op */ } catch (Throwable ignored) { /* no-op */ }
-
-                    try {
-                        Constructor<?> cCtor = nested.getConstructor(Component.class);
-                        Object probe = cCtor.newInstance(Component.literal("/ec probe"));
-                        if (probe instanceof ClickEvent ce && isRunCommand(ce)) {
-                            nestedCtorComponent = cCtor;
-                        }
-                    } catch (NoSuchMethodException ignored) { /* no-op */ } catch (Throwable ignored) { /* no-op */ }
+            // C) Nested ClickEvent subclasses that accept (String) / (Component)
+            for (Class<?> nested : ClickEvent.class.getDeclaredClasses()) {
+                if (!ClickEvent.class.isAssignableFrom(nested) || !Modifier.isPublic(nested.getModifiers())) continue;
+                for (Constructor<?> c : nested.getConstructors()) {
+                    Class<?>[] p = c.getParameterTypes();
+                    if (p.length != 1) continue;
+                    if (p[0] == String.class) candidates.add(bind(lookup.unreflectConstructor(c), false));
+                    else if (p[0] == Component.class) candidates.add(bind(lookup.unreflectConstructor(c), true));
                 }
-            } catch (Throwable ignored) {
-                System.out.println("[EC-CC] sc");
-            } finally {
-                scanned = true;
             }
+        } catch (Throwable t) {
+            LOGGER.debug("[EconomyCraft] ClickEvent shape scan failed", t);
         }
+
+        for (Function<String, ClickEvent> candidate : candidates) {
+            ClickEvent probe = candidate.apply("/ec probe");
+            if (probe != null && isRunCommand(probe)) return candidate;
+        }
+        LOGGER.debug("[EconomyCraft] No RUN_COMMAND ClickEvent shape found; using /tellraw fallback");
+        return null;
     }
 
-    private static Object enumConstantIgnoreCase(Class<?> enumType, String name) {
-        try {
-            if (!enumType.isEnum()) return null;
-            Object[] constants = enumType.getEnumConstants();
-            if (constants == null) return null;
-            for (Object c : constants) {
-                if (name.equalsIgnoreCase(String.valueOf(c))) return c;
+    /** Adapts a (String) or (Component) handle returning some ClickEvent into a function that never throws. */
+    private static Function<String, ClickEvent> bind(MethodHandle handle, boolean component) {
+        if (component) {
+            MethodHandle h = handle.asType(MethodType.methodType(ClickEvent.class, Component.class));
+            return cmd -> {
+                try {
+                    return (ClickEvent) h.invokeExact((Component) Component.literal(cmd));
+                } catch (Throwable t) {
+                    LOGGER.debug("[EconomyCraft] ClickEvent creation failed for {}", cmd, t);
+                    return null;
+                }
+            };
+        }
+        MethodHandle h = handle.asType(MethodType.methodType(ClickEvent.class, String.class));
+        return cmd -> {
+            try {
+                return (ClickEvent) h.invokeExact(cmd);
+            } catch (Throwable t) {
+                LOGGER.debug("[EconomyCraft] ClickEvent creation failed for {}", cmd, t);
+                return null;
             }
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] ec");
+        };
+    }
+
+    private static Object enumConstantIgnoreCase(Class<?> enumType, String name) {
+        if (!enumType.isEnum()) return null;
+        Object[] constants = enumType.getEnumConstants();
+        if (constants == null) return null;
+        for (Object c : constants) {
+            if (name.equalsIgnoreCase(String.valueOf(c))) return c;
         }
         return null;
     }
@@ -198,6 +187,7 @@ public final class ChatCompat {
     /**
      * Try to detect RUN_COMMAND action from a ClickEvent instance.
      * Avoids mapping names; prefers enum-like access, falls back to toString().
+     * Only used while resolving the shape, never per message.
      */
     private static boolean isRunCommand(ClickEvent ce) {
         try {
@@ -211,13 +201,12 @@ public final class ChatCompat {
                     if (s.contains("run_command")) return true;
                 }
             }
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] rc");
+        } catch (Throwable t) {
+            LOGGER.debug("[EconomyCraft] ClickEvent action probe failed", t);
         }
         try {
             return String.valueOf(ce).toLowerCase().contains("run_command");
-        } catch (Throwable ignored) {
-            System.out.println("[EC-CC] rs");
+        } catch (Throwable t) {
             return false;
         }
     }
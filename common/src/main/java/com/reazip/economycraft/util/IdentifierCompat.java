@@ -9,24 +9,36 @@ import org.slf4j.Logger;
 
 import com.mojang.logging.LogUtils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.Optional;
 
+/**
+ * Version-independent access to the identifier type (ResourceLocation / Identifier) and the registry
+ * methods taking it. Shapes are discovered reflectively once at class init and bound to MethodHandles
+ * with erased (Object) signatures, so calls on the hot path are plain invokeExact.
+ */
 public final class IdentifierCompat {
     private static final Logger LOGGER = LogUtils.getLogger();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType ONE_ARG = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType TWO_ARGS = MethodType.methodType(Object.class, Object.class, Object.class);
+
     private static final Class<?> ID_CLASS;
-    private static final Constructor<?> ID_CONSTRUCTOR_TWO;
-    private static final Constructor<?> ID_CONSTRUCTOR_ONE;
-    private static final Method ID_FACTORY_ONE;
-    private static final Method ID_FACTORY_TWO;
-    private static final Method REGISTRY_CONTAINS_KEY;
-    private static final Method REGISTRY_GET_OPTIONAL;
-    private static final Method RESOURCE_KEY_CREATE;
-    private static final Method RESOURCE_KEY_IDENTIFIER;
+    // (String, String) -> id, or null when only the single-string form exists.
+    private static final MethodHandle ID_NEW_TWO;
+    // (String) -> id, taking "namespace:path".
+    private static final MethodHandle ID_NEW_ONE;
+    private static final MethodHandle REGISTRY_CONTAINS_KEY;
+    private static final MethodHandle REGISTRY_GET_OPTIONAL;
+    private static final MethodHandle RESOURCE_KEY_CREATE;
+    private static final MethodHandle RESOURCE_KEY_IDENTIFIER;
     private static final Method HOLDER_VALUE;
-    private static final Method EITHER_LEFT;
-    private static final Method EITHER_RIGHT;
+    private static final MethodHandle EITHER_LEFT;
+    private static final MethodHandle EITHER_RIGHT;
 
     static {
         Class<?> idClass = null;
@@ -89,18 +101,28 @@ public final class IdentifierCompat {
             eitherRight = eitherMethods[1];
         }
 
-        ID_CLASS = idClass;
-        ID_CONSTRUCTOR_TWO = idConstructorTwo;
-        ID_CONSTRUCTOR_ONE = idConstructorOne;
-        ID_FACTORY_ONE = idFactoryOne;
-        ID_FACTORY_TWO = idFactoryTwo;
-        REGISTRY_CONTAINS_KEY = registryContainsKey;
-        REGISTRY_GET_OPTIONAL = registryGetOptional;
-        RESOURCE_KEY_CREATE = resourceKeyCreate;
-        RESOURCE_KEY_IDENTIFIER = resourceKeyIdentifier;
-        HOLDER_VALUE = holderValue;
-        EITHER_LEFT = eitherLeft;
-        EITHER_RIGHT = eitherRight;
+        try {
+            MethodType newTwo = MethodType.methodType(Object.class, String.class, String.class);
+            MethodType newOne = MethodType.methodType(Object.class, String.class);
+            ID_CLASS = idClass;
+            ID_NEW_TWO = idConstructorTwo != null ? LOOKUP.unreflectConstructor(idConstructorTwo).asType(newTwo)
+                    : idFactoryTwo != null ? LOOKUP.unreflect(idFactoryTwo).asType(newTwo)
+                    : null;
+            ID_NEW_ONE = idConstructorOne != null ? LOOKUP.unreflectConstructor(idConstructorOne).asType(newOne)
+                    : idFactoryOne != null ? LOOKUP.unreflect(idFactoryOne).asType(newOne)
+                    : null;
+            REGISTRY_CONTAINS_KEY = LOOKUP.unreflect(registryContainsKey)
+                    .asType(MethodType.methodType(boolean.class, Object.class, Object.class));
+            REGISTRY_GET_OPTIONAL = LOOKUP.unreflect(registryGetOptional)
+                    .asType(MethodType.methodType(Optional.class, Object.class, Object.class));
+            RESOURCE_KEY_CREATE = LOOKUP.unreflect(resourceKeyCreate).asType(TWO_ARGS);
+            RESOURCE_KEY_IDENTIFIER = LOOKUP.unreflect(resourceKeyIdentifier).asType(ONE_ARG);
+            HOLDER_VALUE = holderValue;
+            EITHER_LEFT = eitherLeft != null ? LOOKUP.unreflect(eitherLeft).asType(ONE_ARG) : null;
+            EITHER_RIGHT = eitherRight != null ? LOOKUP.unreflect(eitherRight).asType(ONE_ARG) : null;
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
     }
 
     private IdentifierCompat() {}
@@ -159,15 +181,23 @@ public final class IdentifierCompat {
         if (id == null) {
             return false;
         }
-        return (boolean) invoke(REGISTRY_CONTAINS_KEY, registry, id.handle());
+        try {
+            return (boolean) REGISTRY_CONTAINS_KEY.invokeExact((Object) registry, id.handle());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
     }
 
     public static <T> Optional<T> registryGetOptional(Registry<T> registry, Id id) {
         if (id == null) {
             return Optional.empty();
         }
-        @SuppressWarnings("unchecked")
-        Optional<Object> result = (Optional<Object>) invoke(REGISTRY_GET_OPTIONAL, registry, id.handle());
+        Optional<?> result;
+        try {
+            result = (Optional<?>) REGISTRY_GET_OPTIONAL.invokeExact((Object) registry, id.handle());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
         if (result.isEmpty()) {
             return Optional.empty();
         }
@@ -191,17 +221,25 @@ public final class IdentifierCompat {
         if (id == null) {
             return null;
         }
-        @SuppressWarnings("unchecked")
-        ResourceKey<T> result = (ResourceKey<T>) invokeStatic(RESOURCE_KEY_CREATE, registryKey, id.handle());
-        return result;
+        try {
+            Object key = (Object) RESOURCE_KEY_CREATE.invokeExact((Object) registryKey, id.handle());
+            @SuppressWarnings("unchecked")
+            ResourceKey<T> result = (ResourceKey<T>) key;
+            return result;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
     }
 
     public static Id fromResourceKey(ResourceKey<?> key) {
         if (key == null) {
             return null;
         }
-        Object value = invoke(RESOURCE_KEY_IDENTIFIER, key);
-        return wrap(value);
+        try {
+            return wrap((Object) RESOURCE_KEY_IDENTIFIER.invokeExact((Object) key));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
     }
 
     private static Id parseFromString(String raw, Object handle) {
@@ -225,23 +263,13 @@ public final class IdentifierCompat {
     }
 
     private static Object construct(String namespace, String path) {
-        String combined = namespace + ":" + path;
         try {
-            if (ID_CONSTRUCTOR_TWO != null) {
-                return ID_CONSTRUCTOR_TWO.newInstance(namespace, path);
+            if (ID_NEW_TWO != null) {
+                return (Object) ID_NEW_TWO.invokeExact(namespace, path);
             }
-            if (ID_FACTORY_TWO != null) {
-                return ID_FACTORY_TWO.invoke(null, namespace, path);
-            }
-            if (ID_CONSTRUCTOR_ONE != null) {
-                return ID_CONSTRUCTOR_ONE.newInstance(combined);
-            }
-            if (ID_FACTORY_ONE != null) {
-                return ID_FACTORY_ONE.invoke(null, combined);
-            }
-            throw new IllegalStateException("Identifier constructor not found");
-        } catch (ReflectiveOperationException e) {
-            throw new IllegalStateException(e);
+            return (Object) ID_NEW_ONE.invokeExact(namespace + ":" + path);
+        } catch (Throwable t) {
+            throw rethrow(t);
         }
     }
 
@@ -271,12 +299,16 @@ public final class IdentifierCompat {
         return value != null && value.getClass().getName().equals("com.mojang.datafixers.util.Either");
     }
 
-    @SuppressWarnings("unchecked")
-    private static Optional<?> invokeEitherOptional(Method method, Object target) {
-        if (method == null || target == null) {
+    private static Optional<?> invokeEitherOptional(MethodHandle handle, Object target) {
+        if (handle == null || target == null) {
             return null;
         }
-        Object result = invoke(method, target);
+        Object result;
+        try {
+            result = (Object) handle.invokeExact(target);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
         if (result instanceof Optional<?> optional) {
             return optional;
         }
@@ -420,20 +452,10 @@ public final class IdentifierCompat {
         return sample;
     }
 
-    private static Object invokeStatic(Method method, Object... args) {
-        try {
-            return method.invoke(null, args);
-        } catch (ReflectiveOperationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private static Object invoke(Method method, Object target, Object... args) {
-        try {
-            return method.invoke(target, args);
-        } catch (ReflectiveOperationException e) {
-            throw new IllegalStateException(e);
-        }
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException re) return re;
+        if (t instanceof Error err) throw err;
+        return new IllegalStateException(t);
     }
 
     public record Id(Object handle, String namespace, String path) {
@@ -8,6 +8,9 @@ import net.minecraft.commands.arguments.GameProfileArgument;
 import net.minecraft.server.level.ServerPlayer;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -17,6 +20,35 @@ public final class IdentityCompat {
     public record PlayerRef(UUID id, String name) {}
     private IdentityCompat() {}
 
+    // GameProfile is a record (id()/name()) in newer authlib and a bean (getId()/getName()) in older ones.
+    private static final MethodHandle PROFILE_ID = bindProfileAccessor(UUID.class, "id", "getId");
+    private static final MethodHandle PROFILE_NAME = bindProfileAccessor(String.class, "name", "getName");
+
+    // id/name accessors of NameAndId-like classes, resolved once per class.
+    private static final ClassValue<MethodHandle[]> NAME_AND_ID_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            try {
+                MethodType getter = MethodType.methodType(Object.class, Object.class);
+                return new MethodHandle[] {
+                        MethodHandles.publicLookup().unreflect(findNoArgMethod(type, "id", "getId")).asType(getter),
+                        MethodHandles.publicLookup().unreflect(findNoArgMethod(type, "name", "getName")).asType(getter)
+                };
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to read NameAndId reflectively", e);
+            }
+        }
+    };
+
+    private static MethodHandle bindProfileAccessor(Class<?> type, String... names) {
+        try {
+            Method m = findNoArgMethod(GameProfile.class, names);
+            return MethodHandles.publicLookup().unreflect(m).asType(MethodType.methodType(type, GameProfile.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public static PlayerRef of(ServerPlayer p) {
         return new PlayerRef(p.getUUID(), getGameProfileName(p.getGameProfile()));
     }
@@ -27,29 +59,17 @@ public final class IdentityCompat {
 
     private static UUID getGameProfileId(GameProfile gp) {
         try {
-            Method m = gp.getClass().getMethod("id"); // record-style
-            return (UUID) m.invoke(gp);
-        } catch (Exception e1) {
-            try {
-                Method m = gp.getClass().getMethod("getId"); // getter-style
-                return (UUID) m.invoke(gp);
-            } catch (Exception e2) {
-                throw new IllegalStateException("Cannot access GameProfile ID", e2);
-            }
+            return (UUID) PROFILE_ID.invokeExact(gp);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot access GameProfile ID", t);
         }
     }
 
     private static String getGameProfileName(GameProfile gp) {
         try {
-            Method m = gp.getClass().getMethod("name");
-            return (String) m.invoke(gp);
-        } catch (Exception e1) {
-            try {
-                Method m = gp.getClass().getMethod("getName");
-                return (String) m.invoke(gp);
-            } catch (Exception e2) {
-                throw new IllegalStateException("Cannot access GameProfile name", e2);
-            }
+            return (String) PROFILE_NAME.invokeExact(gp);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot access GameProfile name", t);
         }
     }
 
@@ -60,14 +80,13 @@ public final class IdentityCompat {
     }
 
     private static PlayerRef fromNameAndIdReflect(Object nid) {
+        MethodHandle[] accessors = NAME_AND_ID_ACCESSORS.get(nid.getClass());
         try {
-            Method id = findNoArgMethod(nid.getClass(), "id", "getId");
-            Method name = findNoArgMethod(nid.getClass(), "name", "getName");
-            UUID uuid = readUuidLike(id.invoke(nid));
-            String nm = readStringLike(name.invoke(nid));
+            UUID uuid = readUuidLike((Object) accessors[0].invokeExact(nid));
+            String nm = readStringLike((Object) accessors[1].invokeExact(nid));
             return new PlayerRef(uuid, nm);
-        } catch (ReflectiveOperationException e) {
-            throw new IllegalStateException("Failed to read NameAndId reflectively", e);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to read NameAndId reflectively", t);
         }
     }
 
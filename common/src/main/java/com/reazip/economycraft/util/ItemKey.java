@@ -0,0 +1,12 @@
+package com.reazip.economycraft.util;
+
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+/** Item plus its exact component changes; two stacks with equal keys can merge or substitute for each other. */
+public record ItemKey(Item item, DataComponentPatch components) {
+    public static ItemKey of(ItemStack stack) {
+        return new ItemKey(stack.getItem(), stack.getComponentsPatch());
+    }
+}
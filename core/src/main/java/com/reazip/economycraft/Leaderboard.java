@@ -0,0 +1,67 @@
+package com.reazip.economycraft;
+
+import com.reazip.economycraft.util.OrderStatisticTree;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** Balances ordered richest first (ties by UUID), updated on every balance change. */
+public class Leaderboard {
+    private record Entry(UUID id, long balance) {}
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::balance).reversed()
+            .thenComparing(Entry::id);
+
+    private final OrderStatisticTree<Entry> tree = new OrderStatisticTree<>(ORDER);
+    private final Map<UUID, Long> current = new HashMap<>();
+    // Latest version applied per player (kept after removal), for updates made outside the balance locks.
+    private final Map<UUID, Long> versions = new HashMap<>();
+
+    /**
+     * Like {@link #update(UUID, Long)}, but ignored when a change with a higher {@code version} for the same
+     * player was already applied, so updates published after the balance locks are released cannot reorder.
+     */
+    public synchronized void update(UUID id, Long balance, long version) {
+        Long seen = versions.get(id);
+        if (seen != null && seen >= version) return;
+        versions.put(id, version);
+        update(id, balance);
+    }
+
+    /** Moves the player to their new position; a null balance removes them. */
+    public synchronized void update(UUID id, Long balance) {
+        Long old = balance == null ? current.remove(id) : current.put(id, balance);
+        if (old != null) {
+            if (old.equals(balance)) return;
+            tree.remove(new Entry(id, old));
+        }
+        if (balance != null) tree.add(new Entry(id, balance));
+    }
+
+    public synchronized void rebuild(Map<UUID, Long> balances) {
+        tree.clear();
+        current.clear();
+        versions.clear();
+        balances.forEach(this::update);
+    }
+
+    /** Up to {@code limit} entries starting at zero-based position {@code offset}. */
+    public synchronized List<Map.Entry<UUID, Long>> page(int offset, int limit) {
+        return tree.range(offset, limit).stream()
+                .map(e -> Map.entry(e.id(), e.balance()))
+                .toList();
+    }
+
+    /** One-based position of the player, or -1 without an account. */
+    public synchronized int rank(UUID id) {
+        Long balance = current.get(id);
+        return balance == null ? -1 : tree.rank(new Entry(id, balance)) + 1;
+    }
+
+    public synchronized int size() {
+        return tree.size();
+    }
+}
@@ -0,0 +1,39 @@
+package com.reazip.economycraft;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Multi-leg money movement applied all-or-nothing by {@link com.reazip.economycraft.core.Ledger#transfer(Transaction)}.
+ * Legs on the same account are netted; whatever is debited but not credited (tax) leaves the economy.
+ */
+public final class Transaction {
+    private final Map<UUID, Long> legs = new LinkedHashMap<>();
+
+    public static Transaction create() {
+        return new Transaction();
+    }
+
+    public Transaction debit(UUID player, long amount) {
+        return leg(player, -amount);
+    }
+
+    public Transaction credit(UUID player, long amount) {
+        return leg(player, amount);
+    }
+
+    private Transaction leg(UUID player, long delta) {
+        if (player == null || delta == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid transaction leg");
+        }
+        legs.merge(player, delta, Math::addExact);
+        return this;
+    }
+
+    /** Net balance change per account. */
+    public Map<UUID, Long> legs() {
+        return Collections.unmodifiableMap(legs);
+    }
+}
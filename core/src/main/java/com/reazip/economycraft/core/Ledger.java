@@ -0,0 +1,294 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.Leaderboard;
+import com.reazip.economycraft.Transaction;
+import com.reazip.economycraft.data.BalanceJournal;
+import com.reazip.economycraft.data.RecordSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Account balances: every change is journaled under the account's stripe lock, so records for one account stay
+ * in order. The leaderboard is updated after the lock is released, so its monitor never lengthens a stripe
+ * hold; a version taken under the lock keeps late updates from overwriting newer ones. Snapshots (balances.dat) are written on {@link #save()}, after
+ * which the journal records they cover are dropped. Safe to call from any thread.
+ */
+public final class Ledger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Ledger.class);
+    private static final int LOCK_STRIPES = 64;
+
+    /** Called after every balance change, outside the locks; {@code balance} is null when the account was removed. */
+    public interface Listener {
+        void balanceChanged(UUID account, Long balance);
+    }
+
+    private final Map<UUID, Long> balances = new ConcurrentHashMap<>();
+    private final Object[] accountLocks = new Object[LOCK_STRIPES];
+    private final BalanceJournal journal;
+    private final RecordSnapshot<Long> snapshot;
+    private final Leaderboard leaderboard = new Leaderboard();
+    // Bumped by every change under the account's stripe lock; read under that lock, it versions the change.
+    private final AtomicLong changes = new AtomicLong();
+    private final LongSupplier startingBalance;
+    private final long max;
+    private volatile Listener listener = (account, balance) -> {};
+
+    public Ledger(Path dataDir, LongSupplier startingBalance, long max) {
+        for (int i = 0; i < LOCK_STRIPES; i++) accountLocks[i] = new Object();
+        this.snapshot = new RecordSnapshot<>(dataDir.resolve("balances.dat"), RecordSnapshot.LONG);
+        this.journal = new BalanceJournal(dataDir.resolve("balances.journal"));
+        this.startingBalance = startingBalance;
+        this.max = max;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the last snapshot, or the balances from {@code legacy} when no snapshot exists yet, replays the
+     * journal on top and opens it for appending. Returns true when the result should be saved right away.
+     */
+    public boolean load(Supplier<Map<UUID, Long>> legacy) {
+        boolean changed = false;
+        try {
+            if (Files.exists(snapshot.file())) {
+                snapshot.load(balances::put);
+            } else {
+                Map<UUID, Long> map = legacy.get();
+                if (map != null && !map.isEmpty()) {
+                    balances.putAll(map);
+                    balances.keySet().forEach(snapshot::markDirty);
+                    changed = true;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to load balances", e);
+        }
+        if (journal.replay(balances, snapshot::markDirty) > 0) changed = true;
+        leaderboard.rebuild(balances);
+        try {
+            journal.open();
+        } catch (IOException e) {
+            LOGGER.error("[EconomyCraft] Failed to open balance journal, balances are only saved on autosave", e);
+        }
+        return changed;
+    }
+
+    // --- Queries ---
+
+    public Long get(UUID account) {
+        return balances.get(account);
+    }
+
+    public boolean has(UUID account) {
+        return balances.containsKey(account);
+    }
+
+    /** Read-only live view. */
+    public Map<UUID, Long> balances() {
+        return Collections.unmodifiableMap(balances);
+    }
+
+    public Leaderboard leaderboard() {
+        return leaderboard;
+    }
+
+    public int size() {
+        return balances.size();
+    }
+
+    // --- Mutations ---
+
+    /** Current balance, opening the account with the starting balance if it does not exist. */
+    public long getOrOpen(UUID account) {
+        Long bal = balances.get(account);
+        if (bal != null) return bal;
+        long start;
+        long version;
+        synchronized (lockFor(account)) {
+            bal = balances.get(account);
+            if (bal != null) return bal;
+            start = balanceLocked(account);
+            version = changes.get();
+        }
+        publish(account, start, version);
+        return start;
+    }
+
+    public long set(UUID account, long amount) {
+        long newVal = clamp(amount);
+        long version;
+        synchronized (lockFor(account)) {
+            Long old = balances.put(account, newVal);
+            record(account, newVal - (old != null ? old : 0L), newVal);
+            version = changes.get();
+        }
+        publish(account, newVal, version);
+        return newVal;
+    }
+
+    public long add(UUID account, long amount) {
+        long newVal;
+        long version;
+        synchronized (lockFor(account)) {
+            long current = balanceLocked(account);
+            newVal = clamp(current + amount);
+            balances.put(account, newVal);
+            record(account, newVal - current, newVal);
+            version = changes.get();
+        }
+        publish(account, newVal, version);
+        return newVal;
+    }
+
+    /** Takes {@code amount} if the account holds at least that much. */
+    public boolean remove(UUID account, long amount) {
+        long newVal;
+        long version;
+        boolean removed;
+        synchronized (lockFor(account)) {
+            boolean opened = !balances.containsKey(account);
+            long current = balanceLocked(account);
+            removed = current >= amount;
+            if (removed) {
+                newVal = clamp(current - amount);
+                balances.put(account, newVal);
+                record(account, newVal - current, newVal);
+            } else if (opened) {
+                newVal = current;
+            } else {
+                return false;
+            }
+            version = changes.get();
+        }
+        // A refused removal can still have opened the account.
+        publish(account, newVal, version);
+        return removed;
+    }
+
+    /**
+     * Applies every leg of the transaction or none of them. All involved accounts are locked (in stripe
+     * order, so concurrent transfers cannot deadlock) while balances are checked and written.
+     */
+    public boolean transfer(Transaction tx) {
+        Map<UUID, Long> legs = tx.legs();
+        if (legs.isEmpty()) return true;
+        int[] stripes = legs.keySet().stream().mapToInt(Ledger::stripeOf).distinct().sorted().toArray();
+        Map<UUID, Long> results = new HashMap<>();
+        long[] version = new long[1];
+        boolean applied = withLocks(stripes, 0, () -> {
+            boolean ok = applyLocked(legs, results);
+            version[0] = changes.get();
+            return ok;
+        });
+        // Accounts opened by a refused transfer are published too.
+        results.forEach((account, balance) -> publish(account, balance, version[0]));
+        return applied;
+    }
+
+    public void removeAccount(UUID account) {
+        long version;
+        synchronized (lockFor(account)) {
+            balances.remove(account);
+            snapshot.markDirty(account);
+            journal.appendRemove(account);
+            version = changes.incrementAndGet();
+        }
+        publish(account, null, version);
+    }
+
+    private boolean applyLocked(Map<UUID, Long> legs, Map<UUID, Long> results) {
+        for (Map.Entry<UUID, Long> leg : legs.entrySet()) {
+            boolean opened = !balances.containsKey(leg.getKey());
+            long balance = balanceLocked(leg.getKey());
+            if (opened) results.put(leg.getKey(), balance);
+            if (balance + leg.getValue() < 0) return false;
+        }
+        for (Map.Entry<UUID, Long> leg : legs.entrySet()) {
+            UUID account = leg.getKey();
+            long current = balances.get(account);
+            long newVal = clamp(current + leg.getValue());
+            balances.put(account, newVal);
+            record(account, newVal - current, newVal);
+            results.put(account, newVal);
+        }
+        return true;
+    }
+
+    private boolean withLocks(int[] stripes, int index, BooleanSupplier body) {
+        if (index == stripes.length) return body.getAsBoolean();
+        synchronized (accountLocks[stripes[index]]) {
+            return withLocks(stripes, index + 1, body);
+        }
+    }
+
+    private static int stripeOf(UUID account) {
+        return (account.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+    }
+
+    private Object lockFor(UUID account) {
+        return accountLocks[stripeOf(account)];
+    }
+
+    /** Current balance, opening the account if needed. Caller must hold the account's stripe lock. */
+    private long balanceLocked(UUID account) {
+        Long bal = balances.get(account);
+        if (bal != null) return bal;
+        long start = clamp(startingBalance.getAsLong());
+        balances.put(account, start);
+        record(account, start, start);
+        return start;
+    }
+
+    /**
+     * Journals a balance change. Caller must hold the account's stripe lock so records stay in order; marking
+     * the snapshot is lock-free, so a save in progress never blocks it. The mark comes first: a save that
+     * misses it started after the journal rotated, so the record lands in the segment that save keeps.
+     */
+    private void record(UUID account, long delta, long newVal) {
+        snapshot.markDirty(account);
+        journal.appendSet(account, delta, newVal);
+        changes.incrementAndGet();
+    }
+
+    /** Moves the account on the leaderboard and notifies the listener; called after the locks are released. */
+    private void publish(UUID account, Long balance, long version) {
+        leaderboard.update(account, balance, version);
+        listener.balanceChanged(account, balance);
+    }
+
+    private long clamp(long value) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    // --- Persistence ---
+
+    public boolean needsCompaction() {
+        return journal.needsCompaction();
+    }
+
+    /** Writes the changed snapshot pages and compacts the journal records they cover. */
+    public synchronized void save() throws IOException {
+        journal.rotate();
+        snapshot.save(balances::get);
+        journal.commitRotation();
+    }
+
+    public void close() {
+        journal.close();
+    }
+}
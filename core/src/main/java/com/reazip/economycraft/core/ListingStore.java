@@ -0,0 +1,64 @@
+package com.reazip.economycraft.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records (shop listings, order requests) under ids handed out by the store, iterated oldest first.
+ * Safe to call from any thread.
+ */
+public final class ListingStore<T> {
+    private final ConcurrentSkipListMap<Integer, T> byId = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /** Reserves the id for a new record. */
+    public int allocateId() {
+        return nextId.getAndIncrement();
+    }
+
+    /** The id the next record will get; saved so ids are never reused. */
+    public int nextId() {
+        return nextId.get();
+    }
+
+    public void setNextId(int id) {
+        nextId.set(id);
+    }
+
+    public void put(int id, T value) {
+        byId.put(id, value);
+    }
+
+    /** Swaps in a new value for a live id; returns false if the id is not (or no longer) stored. */
+    public boolean replace(int id, T value) {
+        return byId.replace(id, value) != null;
+    }
+
+    public T remove(int id) {
+        return byId.remove(id);
+    }
+
+    public T get(int id) {
+        return byId.get(id);
+    }
+
+    /** Live view, oldest first. */
+    public Collection<T> values() {
+        return byId.values();
+    }
+
+    public List<T> snapshot() {
+        return List.copyOf(byId.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public void clear() {
+        byId.clear();
+        nextId.set(1);
+    }
+}
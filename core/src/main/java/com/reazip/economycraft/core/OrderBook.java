@@ -0,0 +1,132 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.Transaction;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Bids (order requests) and asks (shop listings) per item kind {@code K}, both sides sorted with price-time
+ * priority. Not thread-safe; callers synchronize.
+ */
+public final class OrderBook<K> {
+    /** One side of the book: {@code price} is the total for {@code quantity} items. */
+    public record Quote(int id, UUID owner, long price, int quantity) {}
+
+    /**
+     * One fill on the ask's terms, the same as buying the listing by hand: the buyer pays {@code cost} plus
+     * {@code tax}, the seller receives the full {@code cost}.
+     */
+    public record Fill(int quantity, long cost, long tax) {
+        public long buyerPays() {
+            return cost + tax;
+        }
+
+        public Transaction transaction(UUID buyer, UUID seller) {
+            return Transaction.create().debit(buyer, buyerPays()).credit(seller, cost);
+        }
+    }
+
+    /** The largest fill between {@code bid} and {@code ask}, priced pro rata from the ask. */
+    public static Fill fill(Quote bid, Quote ask, double taxRate) {
+        int quantity = Math.min(bid.quantity(), ask.quantity());
+        long cost = quantity == ask.quantity() ? ask.price() : ask.price() * quantity / ask.quantity();
+        return new Fill(quantity, cost, Math.round(cost * taxRate));
+    }
+
+    // Unit prices are compared by cross-multiplying; prices and quantities are small enough not to overflow.
+    public static final Comparator<Quote> BY_UNIT_PRICE =
+            (a, b) -> Long.compare(a.price() * b.quantity(), b.price() * a.quantity());
+    private static final Comparator<Quote> ASKS = BY_UNIT_PRICE.thenComparingInt(Quote::id);
+    private static final Comparator<Quote> BIDS = BY_UNIT_PRICE.reversed().thenComparingInt(Quote::id);
+
+    private static final class Book {
+        final TreeSet<Quote> asks = new TreeSet<>(ASKS);
+        final TreeSet<Quote> bids = new TreeSet<>(BIDS);
+    }
+
+    private final Map<K, Book> books = new HashMap<>();
+    private final Map<Integer, Quote> asks = new HashMap<>();
+    private final Map<Integer, Quote> bids = new HashMap<>();
+    private final Map<Integer, K> askKeys = new HashMap<>();
+    private final Map<Integer, K> bidKeys = new HashMap<>();
+
+    /** Adds the ask, replacing any earlier quote with the same id. */
+    public void putAsk(K key, Quote ask) {
+        removeAsk(ask.id());
+        asks.put(ask.id(), ask);
+        askKeys.put(ask.id(), key);
+        books.computeIfAbsent(key, k -> new Book()).asks.add(ask);
+    }
+
+    /** Adds the bid, replacing any earlier quote with the same id. */
+    public void putBid(K key, Quote bid) {
+        removeBid(bid.id());
+        bids.put(bid.id(), bid);
+        bidKeys.put(bid.id(), key);
+        books.computeIfAbsent(key, k -> new Book()).bids.add(bid);
+    }
+
+    public void removeAsk(int id) {
+        remove(id, asks, askKeys, true);
+    }
+
+    public void removeBid(int id) {
+        remove(id, bids, bidKeys, false);
+    }
+
+    private void remove(int id, Map<Integer, Quote> quotes, Map<Integer, K> keys, boolean ask) {
+        Quote q = quotes.remove(id);
+        K key = keys.remove(id);
+        if (q == null || key == null) return;
+        Book book = books.get(key);
+        if (book == null) return;
+        (ask ? book.asks : book.bids).remove(q);
+        if (book.asks.isEmpty() && book.bids.isEmpty()) books.remove(key);
+    }
+
+    /** Item kinds with at least one quote. */
+    public Set<K> keys() {
+        return books.keySet();
+    }
+
+    public int askCount() {
+        return asks.size();
+    }
+
+    public int bidCount() {
+        return bids.size();
+    }
+
+    /**
+     * The best bid for {@code key} after {@code after} in priority order ({@code null} for the best one) that
+     * is at or above the cheapest ask's unit price, or null. {@code after} need not still be in the book.
+     */
+    public Quote nextCrossingBid(K key, Quote after) {
+        Book book = books.get(key);
+        if (book == null || book.asks.isEmpty() || book.bids.isEmpty()) return null;
+        Quote bid = after == null ? book.bids.first() : book.bids.higher(after);
+        if (bid == null || BY_UNIT_PRICE.compare(book.asks.first(), bid) > 0) return null;
+        return bid;
+    }
+
+    /** The cheapest ask at or below the bid's unit price from someone other than the bidder, or null. */
+    public Quote bestAskFor(K key, Quote bid) {
+        return nextAskFor(key, bid, null);
+    }
+
+    /** Like {@link #bestAskFor}, but only asks after {@code after} in priority order. */
+    public Quote nextAskFor(K key, Quote bid, Quote after) {
+        Book book = books.get(key);
+        if (book == null) return null;
+        for (Quote ask : after == null ? book.asks : book.asks.tailSet(after, false)) {
+            if (BY_UNIT_PRICE.compare(ask, bid) > 0) return null;
+            if (!ask.owner().equals(bid.owner())) return ask;
+        }
+        return null;
+    }
+}
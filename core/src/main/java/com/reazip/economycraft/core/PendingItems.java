@@ -0,0 +1,246 @@
+package com.reazip.economycraft.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Items waiting to be claimed per player, grouped by kind {@code K}. Stackable items are merged into the player's
+ * last partial stack of the same kind on insert, so only the last stack of a kind is ever partial, and stack and
+ * item counts are kept up to date so checks never build a list. Stored stacks are never changed in place; a merge
+ * or split replaces them. Each player's items have their own lock, and changed players are tracked so a save
+ * copies only those. Safe to call from any thread.
+ */
+public final class PendingItems<K, S> {
+    /** What is needed from a stack type {@code S} whose kind is {@code K}. */
+    public interface Stacks<K, S> {
+        K kind(S stack);
+        int count(S stack);
+        int maxCount(S stack);
+        /** A new stack of the same kind with {@code count} items. */
+        S withCount(S stack, int count);
+    }
+
+    /** What {@link #claim} took out, and how many items the player still has waiting. */
+    public record Claim<S>(List<S> taken, long itemsLeft) {}
+
+    private static final class Inbox<K, S> {
+        final Map<K, Deque<S>> groups = new LinkedHashMap<>();
+        int stacks;
+        long items;
+    }
+
+    private final Stacks<K, S> ops;
+    private final Map<UUID, Inbox<K, S>> inboxes = new ConcurrentHashMap<>();
+    // Players changed since the last drain; marked under the player's lock.
+    private final Set<UUID> changed = ConcurrentHashMap.newKeySet();
+
+    public PendingItems(Stacks<K, S> ops) {
+        this.ops = ops;
+    }
+
+    // --- Queries ---
+
+    public int stackCount(UUID player) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null) return 0;
+        synchronized (inbox) {
+            return inbox.stacks;
+        }
+    }
+
+    public long itemCount(UUID player) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null) return 0;
+        synchronized (inbox) {
+            return inbox.items;
+        }
+    }
+
+    /** Copies of the player's pending stacks, grouped by kind. */
+    public List<S> view(UUID player) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null) return List.of();
+        synchronized (inbox) {
+            return copies(inbox);
+        }
+    }
+
+    /** Players with an inbox, including emptied ones. */
+    public int players() {
+        return inboxes.size();
+    }
+
+    // --- Changes ---
+
+    /** Adds copies of {@code stacks}; empty ones are skipped. The caller keeps ownership of what it passed in. */
+    public void addAll(UUID player, Collection<S> stacks) {
+        Inbox<K, S> inbox = inboxes.computeIfAbsent(player, k -> new Inbox<>());
+        synchronized (inbox) {
+            for (S s : stacks) {
+                if (ops.count(s) > 0) add(inbox, s);
+            }
+            changed.add(player);
+        }
+    }
+
+    private void add(Inbox<K, S> inbox, S stack) {
+        int remaining = ops.count(stack);
+        Deque<S> group = inbox.groups.computeIfAbsent(ops.kind(stack), k -> new ArrayDeque<>());
+        S last = group.peekLast();
+        if (last != null) {
+            int moved = Math.min(ops.maxCount(last) - ops.count(last), remaining);
+            if (moved > 0) {
+                group.pollLast();
+                group.addLast(ops.withCount(last, ops.count(last) + moved));
+                remaining -= moved;
+                inbox.items += moved;
+            }
+        }
+        int max = Math.max(1, ops.maxCount(stack));
+        while (remaining > 0) {
+            int part = Math.min(max, remaining);
+            group.addLast(ops.withCount(stack, part));
+            remaining -= part;
+            inbox.stacks++;
+            inbox.items += part;
+        }
+    }
+
+    /**
+     * Removes the stack at {@code index} of {@link #view(UUID)}, provided it is still the same kind and count as
+     * {@code expected}; returns null if the inbox changed in the meantime.
+     */
+    public S take(UUID player, int index, S expected) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null || index < 0) return null;
+        synchronized (inbox) {
+            for (Iterator<Deque<S>> it = inbox.groups.values().iterator(); it.hasNext(); ) {
+                Deque<S> group = it.next();
+                if (index >= group.size()) {
+                    index -= group.size();
+                    continue;
+                }
+                Iterator<S> stacksIt = group.iterator();
+                for (int i = 0; i < index; i++) stacksIt.next();
+                S found = stacksIt.next();
+                if (!Objects.equals(ops.kind(found), ops.kind(expected)) || ops.count(found) != ops.count(expected)) {
+                    return null;
+                }
+                stacksIt.remove();
+                if (group.isEmpty()) it.remove();
+                inbox.stacks--;
+                inbox.items -= ops.count(found);
+                changed.add(player);
+                return found;
+            }
+            return null;
+        }
+    }
+
+    /** Removes and returns everything the player has pending. */
+    public List<S> takeAll(UUID player) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null) return List.of();
+        synchronized (inbox) {
+            List<S> out = new ArrayList<>(inbox.stacks);
+            for (Deque<S> group : inbox.groups.values()) out.addAll(group);
+            inbox.groups.clear();
+            inbox.stacks = 0;
+            inbox.items = 0;
+            if (!out.isEmpty()) changed.add(player);
+            return out;
+        }
+    }
+
+    /**
+     * Takes out as much as fits into {@code freeSlots} empty slots plus {@code room}, the space left on partial
+     * stacks per kind. Works from the tail of each kind so only its last stack is ever partial. {@code room} is
+     * used up as items are taken.
+     */
+    public Claim<S> claim(UUID player, Map<K, Integer> room, int freeSlots) {
+        Inbox<K, S> inbox = inboxes.get(player);
+        if (inbox == null) return new Claim<>(List.of(), 0);
+        List<S> taken = new ArrayList<>();
+        int free = freeSlots;
+        synchronized (inbox) {
+            for (Iterator<Map.Entry<K, Deque<S>>> it = inbox.groups.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<K, Deque<S>> e = it.next();
+                Deque<S> group = e.getValue();
+                int available = room.getOrDefault(e.getKey(), 0);
+                while (!group.isEmpty()) {
+                    S last = group.peekLast();
+                    int count = ops.count(last);
+                    if (available < count && free > 0) {
+                        free--;
+                        available += ops.maxCount(last);
+                    }
+                    int moved = Math.min(available, count);
+                    if (moved == 0) break;
+                    available -= moved;
+                    inbox.items -= moved;
+                    group.pollLast();
+                    if (moved == count) {
+                        taken.add(last);
+                        inbox.stacks--;
+                    } else {
+                        taken.add(ops.withCount(last, moved));
+                        group.addLast(ops.withCount(last, count - moved));
+                        break;
+                    }
+                }
+                room.put(e.getKey(), available);
+                if (group.isEmpty()) it.remove();
+            }
+            if (!taken.isEmpty()) changed.add(player);
+            return new Claim<>(taken, inbox.items);
+        }
+    }
+
+    public void clear() {
+        inboxes.clear();
+        changed.clear();
+    }
+
+    // --- Saving ---
+
+    /**
+     * Hands every player changed since the last drain to {@code sink} with copies of their stacks, or null once
+     * their inbox is empty. Players changed while this runs are handed over now or on the next drain. Empty
+     * inboxes stay mapped so a concurrent add never lands in a dropped one.
+     */
+    public void drainChanged(BiConsumer<UUID, List<S>> sink) {
+        for (Iterator<UUID> it = changed.iterator(); it.hasNext(); ) {
+            UUID player = it.next();
+            it.remove();
+            Inbox<K, S> inbox = inboxes.get(player);
+            if (inbox == null) {
+                sink.accept(player, null);
+                continue;
+            }
+            List<S> copy;
+            synchronized (inbox) {
+                copy = inbox.stacks == 0 ? null : copies(inbox);
+            }
+            sink.accept(player, copy);
+        }
+    }
+
+    private List<S> copies(Inbox<K, S> inbox) {
+        List<S> out = new ArrayList<>(inbox.stacks);
+        for (Deque<S> group : inbox.groups.values()) {
+            for (S s : group) out.add(ops.withCount(s, ops.count(s)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,94 @@
+package com.reazip.economycraft.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable price table keyed by price id, plus the buy views derived from it: every buyable category, the
+ * top-level categories, the children of each dotted category prefix and the entries per category.
+ * A reload builds a new table, so readers always see one consistent set of prices.
+ */
+public final class PriceTable<K, E extends PriceTable.Priced> {
+    /** What the table needs to know about an entry. */
+    public interface Priced {
+        String category();
+        long unitBuy();
+    }
+
+    private final Map<K, E> prices;
+    private final List<String> buyCategories;
+    private final List<String> topCategories;
+    private final Map<String, List<String>> subcategories;
+    private final Map<String, List<E>> byCategory;
+
+    public PriceTable(Map<K, E> prices) {
+        this.prices = Collections.unmodifiableMap(prices);
+
+        Set<String> categories = new LinkedHashSet<>();
+        Set<String> tops = new LinkedHashSet<>();
+        Map<String, Set<String>> subs = new HashMap<>();
+        Map<String, List<E>> entries = new HashMap<>();
+        for (E p : prices.values()) {
+            String category = p.category();
+            if (p.unitBuy() <= 0 || category == null) continue;
+            categories.add(category);
+            int dot = category.indexOf('.');
+            tops.add(dot > 0 ? category.substring(0, dot) : category);
+            // Every dotted prefix can be opened as a parent category.
+            for (int i = category.indexOf('.'); i >= 0; i = category.indexOf('.', i + 1)) {
+                String parent = category.substring(0, i).toLowerCase(Locale.ROOT);
+                subs.computeIfAbsent(parent, k -> new LinkedHashSet<>()).add(category.substring(i + 1));
+            }
+            entries.computeIfAbsent(category.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(p);
+        }
+
+        this.buyCategories = List.copyOf(categories);
+        this.topCategories = List.copyOf(tops);
+        Map<String, List<String>> subView = new HashMap<>();
+        subs.forEach((k, v) -> subView.put(k, List.copyOf(v)));
+        this.subcategories = Map.copyOf(subView);
+        Map<String, List<E>> entryView = new HashMap<>();
+        entries.forEach((k, v) -> entryView.put(k, List.copyOf(v)));
+        this.byCategory = Map.copyOf(entryView);
+    }
+
+    public E get(K key) {
+        return prices.get(key);
+    }
+
+    /** The first key in {@code keys} (most specific first) that has an entry, or null. */
+    public K firstPriced(Iterable<K> keys) {
+        for (K key : keys) {
+            if (prices.containsKey(key)) return key;
+        }
+        return null;
+    }
+
+    public int size() {
+        return prices.size();
+    }
+
+    public List<String> buyCategories() {
+        return buyCategories;
+    }
+
+    public List<String> topCategories() {
+        return topCategories;
+    }
+
+    public List<String> subcategories(String topCategory) {
+        if (topCategory == null) return List.of();
+        return subcategories.getOrDefault(topCategory.toLowerCase(Locale.ROOT), List.of());
+    }
+
+    public List<E> buyableByCategory(String category) {
+        if (category == null) return List.of();
+        return byCategory.getOrDefault(category.toLowerCase(Locale.ROOT), List.of());
+    }
+}
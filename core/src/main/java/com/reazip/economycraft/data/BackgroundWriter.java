@@ -0,0 +1,104 @@
+package com.reazip.economycraft.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-writer persistence stage. Callers hand in immutable snapshots; only the latest one is kept
+ * and written at most {@code delayMs} later on a dedicated thread, so bursts of mutations cost one write.
+ */
+public final class BackgroundWriter<S> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundWriter.class);
+
+    @FunctionalInterface
+    public interface Sink<S> {
+        void write(S snapshot) throws Exception;
+    }
+
+    private final String name;
+    private final long delayMs;
+    private final Sink<S> sink;
+    private final ScheduledExecutorService executor;
+    private final AtomicReference<S> pending = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public BackgroundWriter(String name, long delayMs, Sink<S> sink) {
+        this.name = name;
+        this.delayMs = delayMs;
+        this.sink = sink;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "EconomyCraft-" + name + "-Writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Replaces any snapshot still waiting to be written. */
+    public void submit(S snapshot) {
+        submitted.incrementAndGet();
+        if (pending.getAndSet(snapshot) == null) schedule();
+    }
+
+    private void schedule() {
+        try {
+            executor.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the final flush picks the snapshot up.
+        }
+    }
+
+    /** Writes the pending snapshot on the calling thread, waiting for any write already in progress. */
+    public void flush() {
+        try {
+            flushOrThrow();
+        } catch (Exception e) {
+            LOGGER.error("[EconomyCraft] Failed to write {} data", name, e);
+        }
+    }
+
+    /**
+     * Like {@link #flush()}, but a failed write is thrown to the caller, for steps that must not continue
+     * until the data is on disk. The snapshot stays pending and is retried in the background.
+     */
+    public void flushOrThrow() throws Exception {
+        synchronized (writeLock) {
+            S snapshot = pending.getAndSet(null);
+            if (snapshot == null) return;
+            try {
+                sink.write(snapshot);
+                written.incrementAndGet();
+            } catch (Exception e) {
+                if (pending.compareAndSet(null, snapshot)) schedule();
+                throw e;
+            }
+        }
+    }
+
+    /** Stops the writer thread and writes whatever is still pending. */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public long submittedCount() {
+        return submitted.get();
+    }
+
+    public long writtenCount() {
+        return written.get();
+    }
+}
@@ -0,0 +1,285 @@
+package com.reazip.economycraft.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of balance mutations.
+ * Every record carries the absolute new balance, so replaying a journal on top of any
+ * snapshot taken before or during it is idempotent.
+ */
+public final class BalanceJournal implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceJournal.class);
+
+    private static final int MAGIC = 0x45434A4C; // "ECJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // seq(8) msb(8) lsb(8) delta(8) balance(8) type(1) pad(3) crc(4)
+    private static final int RECORD_SIZE = 48;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+    private static final byte TYPE_SET = 0;
+    private static final byte TYPE_REMOVE = 1;
+
+    private static final long SYNC_INTERVAL_MS = 50L;
+    private static final long COMPACT_THRESHOLD_BYTES = 4L * 1024 * 1024;
+
+    private final Path file;
+    private final Path rotatedFile;
+    private final Object bufferLock = new Object();
+    private final Object ioLock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private ByteBuffer spare = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private FileChannel channel;
+    private Thread syncer;
+    private long nextSeq = 1;
+    private long validLength = -1;
+    private volatile long size;
+    private volatile boolean closed;
+    // False until open() succeeds and again once the segment is lost; appends are dropped instead of buffered.
+    private volatile boolean writable;
+
+    public BalanceJournal(Path file) {
+        this.file = file;
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    /**
+     * Applies every intact record (rotated segment first) to the map and reports each touched player;
+     * returns the number applied.
+     */
+    public int replay(Map<UUID, Long> balances, Consumer<UUID> touched) {
+        int applied = replaySegment(rotatedFile, balances, touched, false);
+        applied += replaySegment(file, balances, touched, true);
+        if (applied > 0) {
+            LOGGER.info("[EconomyCraft] Replayed {} balance journal records", applied);
+        }
+        return applied;
+    }
+
+    private int replaySegment(Path segment, Map<UUID, Long> balances, Consumer<UUID> touched, boolean active) {
+        if (Files.notExists(segment)) return 0;
+        byte[] data;
+        try {
+            data = Files.readAllBytes(segment);
+        } catch (IOException e) {
+            LOGGER.error("[EconomyCraft] Failed to read balance journal {}", segment, e);
+            return 0;
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            LOGGER.warn("[EconomyCraft] Ignoring balance journal {} with invalid header", segment);
+            if (active) validLength = 0;
+            return 0;
+        }
+
+        int applied = 0;
+        CRC32 check = new CRC32();
+        while (buf.remaining() >= RECORD_SIZE) {
+            int start = buf.position();
+            check.reset();
+            check.update(data, start, PAYLOAD_SIZE);
+            long seq = buf.getLong();
+            UUID player = new UUID(buf.getLong(), buf.getLong());
+            buf.getLong(); // delta, kept for auditing only
+            long balance = buf.getLong();
+            byte type = buf.get();
+            buf.position(buf.position() + 3);
+            if ((int) check.getValue() != buf.getInt()) {
+                buf.position(start);
+                break;
+            }
+            if (type == TYPE_REMOVE) balances.remove(player);
+            else balances.put(player, balance);
+            touched.accept(player);
+            nextSeq = Math.max(nextSeq, seq + 1);
+            applied++;
+        }
+
+        if (buf.hasRemaining()) {
+            LOGGER.warn("[EconomyCraft] Discarding {} bytes of torn journal tail in {}", buf.remaining(), segment.getFileName());
+        }
+        if (active) validLength = buf.position();
+        return applied;
+    }
+
+    /** Opens the active segment for appending and starts the group-commit thread. */
+    public void open() throws IOException {
+        synchronized (ioLock) {
+            channel = openSegment(file, validLength);
+            size = channel.size();
+            writable = true;
+        }
+        syncer = new Thread(this::runSyncer, "EconomyCraft-Journal");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    public void appendSet(UUID player, long delta, long balance) {
+        append(player, delta, balance, TYPE_SET);
+    }
+
+    public void appendRemove(UUID player) {
+        append(player, 0L, 0L, TYPE_REMOVE);
+    }
+
+    private void append(UUID player, long delta, long balance, byte type) {
+        if (closed || !writable) return;
+        synchronized (bufferLock) {
+            if (pending.remaining() < RECORD_SIZE) {
+                ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            int start = pending.position();
+            pending.putLong(nextSeq++);
+            pending.putLong(player.getMostSignificantBits());
+            pending.putLong(player.getLeastSignificantBits());
+            pending.putLong(delta);
+            pending.putLong(balance);
+            pending.put(type);
+            pending.put((byte) 0).put((byte) 0).put((byte) 0);
+            crc.reset();
+            crc.update(pending.array(), start, PAYLOAD_SIZE);
+            pending.putInt((int) crc.getValue());
+        }
+    }
+
+    /** Writes and fsyncs every record appended so far. */
+    public void sync() throws IOException {
+        synchronized (ioLock) {
+            syncLocked();
+        }
+    }
+
+    private void syncLocked() throws IOException {
+        if (channel == null) return;
+        ByteBuffer batch;
+        synchronized (bufferLock) {
+            if (pending.position() == 0) return;
+            batch = pending;
+            pending = spare;
+            spare = null;
+        }
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+            size = channel.size();
+        } finally {
+            batch.clear();
+            synchronized (bufferLock) {
+                spare = batch.capacity() >= pending.capacity() ? batch : ByteBuffer.allocate(pending.capacity());
+            }
+        }
+    }
+
+    public boolean needsCompaction() {
+        return size >= COMPACT_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Moves the current records aside before a snapshot is written. Records appended after this call
+     * land in a fresh segment; call {@link #commitRotation()} once the snapshot is durable.
+     */
+    public void rotate() throws IOException {
+        synchronized (ioLock) {
+            if (channel == null) return;
+            syncLocked();
+            if (Files.exists(rotatedFile)) {
+                // A previous snapshot failed: keep its records and add ours behind them.
+                try (FileChannel old = FileChannel.open(rotatedFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    channel.transferTo(HEADER_SIZE, channel.size() - HEADER_SIZE, old);
+                    old.force(false);
+                }
+                channel.truncate(HEADER_SIZE);
+                channel.force(false);
+            } else {
+                channel.close();
+                try {
+                    Files.move(file, rotatedFile);
+                    channel = openSegment(file, 0);
+                } catch (IOException e) {
+                    lostSegment();
+                    throw e;
+                }
+            }
+            size = channel.size();
+        }
+    }
+
+    // The snapshot now has to carry every change; stop buffering records that can never be written.
+    private void lostSegment() {
+        writable = false;
+        channel = null;
+        synchronized (bufferLock) {
+            pending.clear();
+        }
+        LOGGER.error("[EconomyCraft] Balance journal {} is unavailable, balances are only saved on autosave", file);
+    }
+
+    public void commitRotation() throws IOException {
+        Files.deleteIfExists(rotatedFile);
+    }
+
+    private FileChannel openSegment(Path segment, long keep) throws IOException {
+        FileChannel ch = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (keep >= HEADER_SIZE) {
+            ch.truncate(keep);
+        } else if (keep == 0 || ch.size() < HEADER_SIZE) {
+            ch.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        }
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private void runSyncer() {
+        while (!closed) {
+            try {
+                Thread.sleep(SYNC_INTERVAL_MS);
+                sync();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.error("[EconomyCraft] Failed to sync balance journal {}", file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writable = false;
+        if (syncer != null) {
+            syncer.interrupt();
+            try { syncer.join(1000L); } catch (InterruptedException ignored) {}
+        }
+        synchronized (ioLock) {
+            try {
+                syncLocked();
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                LOGGER.error("[EconomyCraft] Failed to close balance journal {}", file, e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.reazip.economycraft.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Offline converter from balances.json / daily_sells.json to the binary snapshot files.
+ * Run with the server stopped: {@code java -cp economycraft.jar:gson.jar com.reazip.economycraft.data.LegacyJsonConverter [dataDir]}.
+ * The server performs the same migration on its own at startup; this is for converting ahead of time.
+ */
+public final class LegacyJsonConverter {
+    private LegacyJsonConverter() {}
+
+    public static void main(String[] args) throws IOException {
+        Path dataDir = Path.of(args.length > 0 ? args[0] : "config/economycraft/data");
+
+        Path balancesJson = dataDir.resolve("balances.json");
+        if (Files.exists(balancesJson)) {
+            Map<UUID, Long> balances = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> e : readObject(balancesJson).entrySet()) {
+                balances.put(UUID.fromString(e.getKey()), e.getValue().getAsLong());
+            }
+            write(new RecordSnapshot<>(dataDir.resolve("balances.dat"), RecordSnapshot.LONG), balances);
+            System.out.println("Converted " + balances.size() + " balances");
+        }
+
+        Path dailyJson = dataDir.resolve("daily_sells.json");
+        if (Files.exists(dailyJson)) {
+            Map<UUID, long[]> daily = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> e : readObject(dailyJson).entrySet()) {
+                JsonObject o = e.getValue().getAsJsonObject();
+                daily.put(UUID.fromString(e.getKey()), new long[] { o.get("day").getAsLong(), o.get("amount").getAsLong() });
+            }
+            write(new RecordSnapshot<>(dataDir.resolve("daily_sells.dat"), RecordSnapshot.LONG_PAIR), daily);
+            System.out.println("Converted " + daily.size() + " daily sell entries");
+        }
+    }
+
+    private static JsonObject readObject(Path file) throws IOException {
+        JsonElement root = JsonParser.parseString(Files.readString(file));
+        return root.isJsonObject() ? root.getAsJsonObject() : new JsonObject();
+    }
+
+    private static <V> void write(RecordSnapshot<V> snapshot, Map<UUID, V> values) throws IOException {
+        values.keySet().forEach(snapshot::markDirty);
+        snapshot.save(values::get);
+    }
+}
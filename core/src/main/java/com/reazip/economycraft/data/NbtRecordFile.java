@@ -0,0 +1,130 @@
+package com.reazip.economycraft.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed file of length-prefixed binary records, used by the {@code nbt} storage format.
+ * Layout: magic and version, then a gzip stream holding one {@code meta} value (e.g. the next id),
+ * the record count and every record as {@code int length + bytes}. The length prefix lets records be
+ * decoded on the common fork-join pool while the file is still being read.
+ */
+public final class NbtRecordFile {
+    private static final int MAGIC = 0x45434E42; // "ECNB"
+    private static final int VERSION = 1;
+    // Below this the fork-join hand-off costs more than it saves.
+    private static final int PARALLEL_MIN_RECORDS = 512;
+
+    private NbtRecordFile() {}
+
+    public interface RecordWriter<T> {
+        void write(T value, DataOutput out) throws IOException;
+    }
+
+    /** Returns the decoded record, or null to drop it. */
+    public interface RecordReader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    public record Contents<T>(long meta, List<T> records) {}
+
+    /** Writes all records atomically; returns the file size in bytes. */
+    public static <T> int write(Path file, long meta, Collection<T> records, RecordWriter<T> writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(scratch);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, 64 * 1024))) {
+            out.writeLong(meta);
+            out.writeInt(records.size());
+            for (T value : records) {
+                scratch.reset();
+                writer.write(value, record);
+                out.writeInt(scratch.size());
+                scratch.writeTo(out);
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        AtomicFiles.writeBytes(file, bytes.toByteArray());
+        return bytes.size();
+    }
+
+    public static <T> Contents<T> read(Path file, RecordReader<T> reader) throws IOException {
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (raw.readInt() != MAGIC) throw new IOException("Not a record file: " + file);
+            int version = raw.readInt();
+            if (version != VERSION) throw new IOException("Unsupported record file version " + version + ": " + file);
+
+            DataInputStream in = new DataInputStream(new GZIPInputStream(raw, 64 * 1024));
+            long meta = in.readLong();
+            int count = in.readInt();
+            boolean parallel = count >= PARALLEL_MIN_RECORDS;
+
+            List<T> out = new ArrayList<>(count);
+            List<CompletableFuture<T>> pending = new ArrayList<>(parallel ? count : 0);
+            for (int i = 0; i < count; i++) {
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                if (parallel) {
+                    pending.add(CompletableFuture.supplyAsync(() -> decode(reader, body), ForkJoinPool.commonPool()));
+                } else {
+                    T value = decode(reader, body);
+                    if (value != null) out.add(value);
+                }
+            }
+            // join() keeps the file order.
+            for (CompletableFuture<T> f : pending) {
+                T value;
+                try {
+                    value = f.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                    throw e;
+                }
+                if (value != null) out.add(value);
+            }
+            return new Contents<>(meta, out);
+        }
+    }
+
+    private static <T> T decode(RecordReader<T> reader, byte[] body) {
+        try {
+            return reader.read(new DataInputStream(new ByteArrayInputStream(body)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void writeUuid(UUID id, DataOutput out) throws IOException {
+        out.writeBoolean(id != null);
+        if (id == null) return;
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readUuid(DataInput in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+}
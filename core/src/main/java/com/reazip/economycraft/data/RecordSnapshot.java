@@ -0,0 +1,287 @@
+package com.reazip.economycraft.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of fixed-width records keyed by UUID (msb, lsb, value).
+ * Records keep their slot for the lifetime of the file, so a save only rewrites the pages holding
+ * changed records. Removed records become tombstones until the next full rewrite, which goes
+ * through a temp file and an atomic move. Slots appended past the committed count in the header
+ * are ignored on load, so a torn append can never produce a phantom account. Every record carries a CRC32,
+ * so a record torn by a crash during an in-place page write is dropped on load instead of trusted.
+ * {@link #markDirty} never waits for a save in progress: changed ids are collected lock-free and drained
+ * when the next save starts.
+ */
+public final class RecordSnapshot<V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordSnapshot.class);
+    private static final int MAGIC = 0x45435244; // "ECRD"
+    // Version 1 records have no checksum; they are still read and rewritten as version 2 on the next save.
+    private static final int VERSION = 2;
+    private static final int CRC_SIZE = 4;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORDS_PER_PAGE = 128;
+    private static final int COMPACT_MIN_TOMBSTONES = 256;
+
+    public interface Codec<V> {
+        int size();
+        void write(V value, ByteBuffer out);
+        V read(ByteBuffer in);
+    }
+
+    public static final Codec<Long> LONG = new Codec<>() {
+        @Override public int size() { return 8; }
+        @Override public void write(Long value, ByteBuffer out) { out.putLong(value); }
+        @Override public Long read(ByteBuffer in) { return in.getLong(); }
+    };
+
+    public static final Codec<long[]> LONG_PAIR = new Codec<>() {
+        @Override public int size() { return 16; }
+        @Override public void write(long[] value, ByteBuffer out) { out.putLong(value[0]).putLong(value[1]); }
+        @Override public long[] read(ByteBuffer in) { return new long[] { in.getLong(), in.getLong() }; }
+    };
+
+    private final Path file;
+    private final Codec<V> codec;
+    private final int recordSize;
+    private final byte[] tombstone;
+    private final CRC32 crc = new CRC32();
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private List<UUID> owners = new ArrayList<>();
+    private final BitSet dead = new BitSet();
+    private final BitSet dirtyPages = new BitSet();
+    // Ids changed since the last save started; everything else is guarded by this.
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private int deadCount;
+    private boolean rewriteNeeded = true;
+
+    public RecordSnapshot(Path file, Codec<V> codec) {
+        this.file = file;
+        this.codec = codec;
+        this.recordSize = 16 + codec.size() + CRC_SIZE;
+        this.tombstone = new byte[codec.size()];
+        Arrays.fill(tombstone, (byte) 0xFF);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Reads every live record into the sink. Records failing their checksum are skipped, as if never saved.
+     * A missing or unreadable file, an old version or a skipped record schedules a full rewrite.
+     */
+    public synchronized void load(BiConsumer<UUID, V> sink) throws IOException {
+        reset(new ArrayList<>());
+        dirty.clear();
+        rewriteNeeded = true;
+        if (Files.notExists(file)) return;
+
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            throw quarantine("Invalid snapshot header in " + file);
+        }
+        int version = buf.getInt();
+        boolean checked = version == VERSION;
+        int size = checked ? recordSize : recordSize - CRC_SIZE;
+        if ((version != 1 && !checked) || buf.getInt() != size) {
+            throw quarantine("Invalid snapshot header in " + file);
+        }
+        int count = buf.getInt();
+        if (count < 0 || (long) count * size > buf.remaining()) {
+            throw quarantine("Truncated snapshot " + file);
+        }
+
+        byte[] value = new byte[codec.size()];
+        int torn = 0;
+        for (int slot = 0; slot < count; slot++) {
+            int start = buf.position();
+            UUID id = new UUID(buf.getLong(), buf.getLong());
+            owners.add(id);
+            int valueStart = buf.position();
+            buf.get(value);
+            if (checked && checksum(data, start) != buf.getInt()) {
+                killSlot(slot);
+                torn++;
+                continue;
+            }
+            if (Arrays.equals(value, tombstone)) {
+                killSlot(slot);
+                continue;
+            }
+            Integer previous = slots.put(id, slot);
+            if (previous != null) killSlot(previous);
+            sink.accept(id, codec.read(buf.duplicate().position(valueStart)));
+        }
+        if (torn > 0) {
+            LOGGER.warn("[EconomyCraft] Skipped {} damaged records in {}", torn, file.getFileName());
+        }
+        rewriteNeeded = torn > 0 || !checked;
+    }
+
+    private int checksum(byte[] data, int start) {
+        crc.reset();
+        crc.update(data, start, recordSize - CRC_SIZE);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Marks the record as changed; a missing value at save time turns it into a tombstone. Lock-free, so it
+     * can be called under the caller's own locks while a save is writing; a save picks up every id marked
+     * before it starts.
+     */
+    public void markDirty(UUID id) {
+        dirty.add(id);
+    }
+
+    public boolean isDirty() {
+        if (!dirty.isEmpty()) return true;
+        synchronized (this) {
+            return rewriteNeeded || !dirtyPages.isEmpty();
+        }
+    }
+
+    /** Moves the ids marked so far onto their pages, giving new ids a slot. Ids marked meanwhile stay queued. */
+    private void drainDirty() {
+        for (Iterator<UUID> it = dirty.iterator(); it.hasNext(); ) {
+            UUID id = it.next();
+            it.remove();
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = owners.size();
+                owners.add(id);
+                slots.put(id, slot);
+            }
+            dirtyPages.set(slot / RECORDS_PER_PAGE);
+        }
+    }
+
+    /** Persists changed pages in place, or rewrites the whole file atomically when it needs compacting. */
+    public synchronized void save(Function<UUID, V> values) throws IOException {
+        drainDirty();
+        if (rewriteNeeded || Files.notExists(file)
+                || (deadCount >= COMPACT_MIN_TOMBSTONES && deadCount * 4 > owners.size())) {
+            rewrite(values);
+            return;
+        }
+        if (dirtyPages.isEmpty()) return;
+
+        int pageBytes = RECORDS_PER_PAGE * recordSize;
+        ByteBuffer page = ByteBuffer.allocate(pageBytes);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int p = dirtyPages.nextSetBit(0); p >= 0; p = dirtyPages.nextSetBit(p + 1)) {
+                int from = p * RECORDS_PER_PAGE;
+                int to = Math.min(from + RECORDS_PER_PAGE, owners.size());
+                page.clear();
+                for (int slot = from; slot < to; slot++) {
+                    encodeSlot(slot, values, page);
+                }
+                page.flip();
+                long pos = HEADER_SIZE + (long) from * recordSize;
+                while (page.hasRemaining()) pos += ch.write(page, pos);
+            }
+            ch.force(false);
+            ByteBuffer header = header(owners.size());
+            while (header.hasRemaining()) ch.write(header, header.position());
+            ch.force(false);
+        }
+        dirtyPages.clear();
+    }
+
+    private void encodeSlot(int slot, Function<UUID, V> values, ByteBuffer out) {
+        int start = out.position();
+        UUID id = owners.get(slot);
+        out.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        V value = dead.get(slot) ? null : values.apply(id);
+        if (value == null) {
+            if (!dead.get(slot)) {
+                slots.remove(id, slot);
+                killSlot(slot);
+            }
+            out.put(tombstone);
+        } else {
+            codec.write(value, out);
+        }
+        out.putInt(checksum(out.array(), start));
+    }
+
+    private void rewrite(Function<UUID, V> values) throws IOException {
+        List<UUID> live = new ArrayList<>(slots.size());
+        List<V> liveValues = new ArrayList<>(slots.size());
+        for (int slot = 0; slot < owners.size(); slot++) {
+            if (dead.get(slot)) continue;
+            UUID id = owners.get(slot);
+            V value = values.apply(id);
+            if (value == null) continue;
+            live.add(id);
+            liveValues.add(value);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + live.size() * recordSize);
+        out.put(header(live.size()));
+        for (int i = 0; i < live.size(); i++) {
+            int start = out.position();
+            UUID id = live.get(i);
+            out.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+            codec.write(liveValues.get(i), out);
+            out.putInt(checksum(out.array(), start));
+        }
+        AtomicFiles.writeBytes(file, out.array());
+
+        reset(live);
+        for (int slot = 0; slot < live.size(); slot++) {
+            slots.put(live.get(slot), slot);
+        }
+        rewriteNeeded = false;
+    }
+
+    private void reset(List<UUID> newOwners) {
+        owners = newOwners;
+        slots.clear();
+        dead.clear();
+        dirtyPages.clear();
+        deadCount = 0;
+    }
+
+    private void killSlot(int slot) {
+        if (!dead.get(slot)) {
+            dead.set(slot);
+            deadCount++;
+        }
+    }
+
+    /** Keeps a copy of an unreadable file so the next full rewrite cannot destroy it. */
+    private IOException quarantine(String message) throws IOException {
+        Files.copy(file, file.resolveSibling(file.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        return new IOException(message);
+    }
+
+    private ByteBuffer header(int count) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(recordSize).putInt(count);
+        header.flip();
+        return header;
+    }
+}
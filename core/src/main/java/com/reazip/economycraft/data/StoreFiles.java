@@ -0,0 +1,50 @@
+package com.reazip.economycraft.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The two files a store can live in: the one of the configured storage format and the one of the other format.
+ * Only one of them is live. After a conversion the source is renamed to {@code <name>.migrated}, and if both
+ * exist anyway the newer one is loaded, so switching formats back and forth never reloads stale data.
+ */
+public final class StoreFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreFiles.class);
+
+    private StoreFiles() {}
+
+    /**
+     * The file to load: {@code file}, or {@code otherFile} when only that one exists or it is newer (the caller
+     * then converts it). A stale {@code otherFile} is retired. Null when neither exists.
+     */
+    public static Path source(Path file, Path otherFile) {
+        boolean hasFile = Files.exists(file);
+        boolean hasOther = Files.exists(otherFile);
+        if (!hasOther) return hasFile ? file : null;
+        if (!hasFile) return otherFile;
+
+        try {
+            if (Files.getLastModifiedTime(otherFile).compareTo(Files.getLastModifiedTime(file)) > 0) {
+                LOGGER.warn("[EconomyCraft] Both {} and {} exist; loading the newer {}",
+                        file.getFileName(), otherFile.getFileName(), otherFile.getFileName());
+                return otherFile;
+            }
+            LOGGER.warn("[EconomyCraft] Both {} and {} exist; loading the newer {} and retiring {}",
+                    file.getFileName(), otherFile.getFileName(), file.getFileName(), otherFile.getFileName());
+            retire(otherFile);
+        } catch (IOException e) {
+            LOGGER.error("[EconomyCraft] Could not compare or retire {}", otherFile, e);
+        }
+        return file;
+    }
+
+    /** Renames a converted source to {@code <name>.migrated}, replacing an earlier one. */
+    public static void retire(Path file) throws IOException {
+        Files.move(file, file.resolveSibling(file.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,89 @@
+package com.reazip.economycraft.data;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Record-at-a-time JSON loading: only one record is parsed into a tree at a time, and decoding (the
+ * expensive ItemStack codec step) can run on the common fork-join pool while the file is still being read.
+ */
+public final class StreamingJson {
+    // Below this the fork-join hand-off costs more than it saves.
+    private static final long PARALLEL_THRESHOLD_BYTES = 256 * 1024;
+
+    private StreamingJson() {}
+
+    /** Called once per top-level field; must consume the value (or call {@code in.skipValue()}). */
+    public interface FieldHandler {
+        void field(String name, JsonReader in) throws IOException;
+    }
+
+    /** Receives one entry of a JSON object whose values are arrays of records. */
+    public interface EntryHandler<T> {
+        void entry(String key, List<T> values);
+    }
+
+    /** Whether the file is big enough for parallel decoding to pay off. */
+    public static boolean worthParallel(Path file) throws IOException {
+        return Files.size(file) >= PARALLEL_THRESHOLD_BYTES;
+    }
+
+    /** Streams the top-level object of {@code file}, handing each field to {@code handler}. */
+    public static void readObject(Path file, FieldHandler handler) throws IOException {
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8); JsonReader in = new JsonReader(r)) {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) return;
+            in.beginObject();
+            while (in.hasNext()) {
+                handler.field(in.nextName(), in);
+            }
+            in.endObject();
+        }
+    }
+
+    /** Reads an array of objects one element at a time; null results of {@code decode} are dropped. */
+    public static <T> List<T> readArray(JsonReader in, Function<JsonObject, T> decode, boolean parallel) throws IOException {
+        List<CompletableFuture<T>> pending = new ArrayList<>();
+        List<T> out = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            JsonObject record = JsonParser.parseReader(in).getAsJsonObject();
+            if (parallel) {
+                pending.add(CompletableFuture.supplyAsync(() -> decode.apply(record), ForkJoinPool.commonPool()));
+            } else {
+                T value = decode.apply(record);
+                if (value != null) out.add(value);
+            }
+        }
+        in.endArray();
+        // join() keeps the file order.
+        for (CompletableFuture<T> f : pending) {
+            T value = f.join();
+            if (value != null) out.add(value);
+        }
+        return out;
+    }
+
+    /** Reads an object of arrays (e.g. deliveries by player), one array element at a time. */
+    public static <T> void readMapOfArrays(JsonReader in, Function<JsonObject, T> decode, boolean parallel,
+                                           EntryHandler<T> handler) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            handler.entry(key, readArray(in, decode, parallel));
+        }
+        in.endObject();
+    }
+}
@@ -0,0 +1,48 @@
+package com.reazip.economycraft.jfr;
+
+import com.reazip.economycraft.metrics.Histogram;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.function.IntSupplier;
+
+/** One page of a chest menu (shop, orders, server shop) rebuilt for a player. Runs on the server thread. */
+@Name("economycraft.MenuRender")
+@Label("Menu Render")
+@Category({"EconomyCraft", "Menus"})
+@Description("Chest menu page filled with items")
+public final class MenuRenderEvent extends Event {
+    @Label("Menu")
+    public String menu;
+
+    @Label("Page")
+    public int page;
+
+    @Label("Entries")
+    @Description("Records the page is taken from, e.g. every listing matching the search")
+    public int entries;
+
+    /**
+     * Runs {@code render}, recording its time in {@code time} and as an event; {@code entries} is read after
+     * rendering, and only while a recording has the event enabled.
+     */
+    public static void timed(String menu, int page, IntSupplier entries, Histogram time, Runnable render) {
+        MenuRenderEvent event = new MenuRenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            render.run();
+        } finally {
+            time.recordSince(start);
+            if (event.shouldCommit()) {
+                event.menu = menu;
+                event.page = page;
+                event.entries = entries.getAsInt();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.reazip.economycraft.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** prices.json read and the price table rebuilt, on startup or {@code /eco reload}. */
+@Name("economycraft.PriceReload")
+@Label("Price Reload")
+@Category({"EconomyCraft", "Persistence"})
+@Description("prices.json loaded into a new price table")
+public final class PriceReloadEvent extends Event {
+    @Label("Prices")
+    public int prices;
+
+    @Label("Success")
+    @Description("False when the file could not be read and the previous prices were kept")
+    public boolean success;
+}
@@ -0,0 +1,48 @@
+package com.reazip.economycraft.jfr;
+
+import com.reazip.economycraft.data.BackgroundWriter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.ToIntFunction;
+
+/** One flush of a data store (balances, shop, orders, deliveries) to disk. */
+@Name("economycraft.Save")
+@Label("Data Save")
+@Category({"EconomyCraft", "Persistence"})
+@Description("Economy data written to config/economycraft/data")
+@StackTrace(false)
+public final class SaveEvent extends Event {
+    @Label("Store")
+    public String store;
+
+    @Label("Records")
+    public int records;
+
+    @Label("Success")
+    public boolean success;
+
+    /** Wraps a background writer sink so every write is recorded; {@code records} counts the snapshot. */
+    public static <S> BackgroundWriter.Sink<S> recorded(String store, BackgroundWriter.Sink<S> sink, ToIntFunction<S> records) {
+        return snapshot -> {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            boolean success = false;
+            try {
+                sink.write(snapshot);
+                success = true;
+            } finally {
+                if (event.shouldCommit()) {
+                    event.store = store;
+                    event.records = records.applyAsInt(snapshot);
+                    event.success = success;
+                    event.commit();
+                }
+            }
+        };
+    }
+}
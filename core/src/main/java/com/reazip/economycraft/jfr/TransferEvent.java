@@ -0,0 +1,36 @@
+package com.reazip.economycraft.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A balance change: {@code /pay}, a multi-leg transaction (shop and order trades), or an admin add, remove or set. */
+@Name("economycraft.Transfer")
+@Label("Money Transfer")
+@Category({"EconomyCraft", "Economy"})
+@Description("Balance change applied to the ledger")
+public final class TransferEvent extends Event {
+    @Label("Kind")
+    @Description("pay, transaction, add, remove or set")
+    public String kind;
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Amount")
+    @Description("Money moved; for set, the new balance")
+    public long amount;
+
+    @Label("Legs")
+    @Description("Accounts touched")
+    public int legs;
+
+    @Label("Applied")
+    @Description("False when rejected, e.g. for insufficient funds")
+    public boolean applied;
+}
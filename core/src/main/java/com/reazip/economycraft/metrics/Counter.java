@@ -0,0 +1,37 @@
+package com.reazip.economycraft.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count; increments from many threads touch separate cells instead of one contended word. */
+public final class Counter implements Metric {
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String help() {
+        return help;
+    }
+}
@@ -0,0 +1,30 @@
+package com.reazip.economycraft.metrics;
+
+import java.util.function.LongSupplier;
+
+/** Current value read on demand, e.g. a collection size. */
+public final class Gauge implements Metric {
+    private final String name;
+    private final String help;
+    private final LongSupplier value;
+
+    Gauge(String name, String help, LongSupplier value) {
+        this.name = name;
+        this.help = help;
+        this.value = value;
+    }
+
+    public long get() {
+        return value.getAsLong();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String help() {
+        return help;
+    }
+}
@@ -0,0 +1,97 @@
+package com.reazip.economycraft.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution over fixed bucket bounds. Recording is a binary search plus a few {@link LongAdder} updates:
+ * lock-free and allocation-free. Quantiles are estimated as the upper bound of the bucket they fall in.
+ */
+public final class Histogram implements Metric {
+    private final String name;
+    private final String help;
+    // Inclusive upper bounds, ascending; one extra bucket catches everything above the last bound.
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+    private final double unit;
+
+    Histogram(String name, String help, double unit, long[] bounds) {
+        this.name = name;
+        this.help = help;
+        this.unit = unit;
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        this.buckets = new LongAdder[this.bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    public void record(long value) {
+        int i = Arrays.binarySearch(bounds, value);
+        buckets[i < 0 ? -i - 1 : i].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** Records the nanoseconds elapsed since {@code startNanos} (from {@link System#nanoTime()}). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long n = 0;
+        for (LongAdder b : buckets) n += b.sum();
+        return n;
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** Estimated value at quantile {@code q} (0..1), or 0 when nothing was recorded. */
+    public long quantile(double q) {
+        long[] counts = bucketCounts();
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i < bounds.length ? Math.min(bounds[i], max()) : max();
+        }
+        return max();
+    }
+
+    /** Per-bucket counts (not cumulative); the last entry is the overflow bucket. */
+    public long[] bucketCounts() {
+        long[] out = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) out[i] = buckets[i].sum();
+        return out;
+    }
+
+    public long[] bounds() {
+        return bounds.clone();
+    }
+
+    /** Multiplier from recorded values to the exported unit, e.g. 1e-9 for nanosecond timers exported in seconds. */
+    public double unit() {
+        return unit;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String help() {
+        return help;
+    }
+}
@@ -0,0 +1,7 @@
+package com.reazip.economycraft.metrics;
+
+/** A named measurement in a {@link MetricRegistry}; {@link #name()} includes the registry prefix. */
+public sealed interface Metric permits Counter, Gauge, Histogram {
+    String name();
+    String help();
+}
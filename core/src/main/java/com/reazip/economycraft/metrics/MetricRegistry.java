@@ -0,0 +1,58 @@
+package com.reazip.economycraft.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms, kept in registration order. Metrics are meant to be registered once
+ * (e.g. in static fields) and updated from any thread.
+ */
+public final class MetricRegistry {
+    // Timer buckets: 1 microsecond, doubling up to about 8.4 seconds.
+    private static final long[] TIMER_BOUNDS = new long[24];
+    static {
+        for (int i = 0; i < TIMER_BOUNDS.length; i++) TIMER_BOUNDS[i] = 1_000L << i;
+    }
+
+    private final String prefix;
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    /** {@code prefix} is prepended to every name with an underscore, e.g. {@code economycraft}. */
+    public MetricRegistry(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Counter counter(String name, String help) {
+        return register(new Counter(fullName(name), help));
+    }
+
+    public Gauge gauge(String name, String help, LongSupplier value) {
+        return register(new Gauge(fullName(name), help, value));
+    }
+
+    public Histogram histogram(String name, String help, double unit, long... bounds) {
+        return register(new Histogram(fullName(name), help, unit, bounds));
+    }
+
+    /** Histogram of nanosecond durations, exported in seconds; {@code name} should end in {@code _seconds}. */
+    public Histogram timer(String name, String help) {
+        return histogram(name, help, 1e-9, TIMER_BOUNDS);
+    }
+
+    public List<Metric> metrics() {
+        return List.copyOf(metrics);
+    }
+
+    private String fullName(String name) {
+        return prefix.isEmpty() ? name : prefix + "_" + name;
+    }
+
+    private synchronized <M extends Metric> M register(M metric) {
+        for (Metric m : metrics) {
+            if (m.name().equals(metric.name())) throw new IllegalArgumentException("Duplicate metric " + metric.name());
+        }
+        metrics.add(metric);
+        return metric;
+    }
+}
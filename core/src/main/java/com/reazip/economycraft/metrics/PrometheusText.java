@@ -0,0 +1,65 @@
+package com.reazip.economycraft.metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/** Writes a registry in the Prometheus text exposition format (version 0.0.4). */
+public final class PrometheusText {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private PrometheusText() {}
+
+    public static String format(MetricRegistry registry) {
+        StringBuilder out = new StringBuilder(4096);
+        try {
+            write(registry, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder does not throw
+        }
+        return out.toString();
+    }
+
+    public static void write(MetricRegistry registry, Appendable out) throws IOException {
+        for (Metric metric : registry.metrics()) {
+            String name = metric.name();
+            out.append("# HELP ").append(name).append(' ').append(escapeHelp(metric.help())).append('\n');
+            switch (metric) {
+                case Counter c -> {
+                    out.append("# TYPE ").append(name).append(" counter\n");
+                    out.append(name).append(' ').append(Long.toString(c.get())).append('\n');
+                }
+                case Gauge g -> {
+                    out.append("# TYPE ").append(name).append(" gauge\n");
+                    out.append(name).append(' ').append(Long.toString(g.get())).append('\n');
+                }
+                case Histogram h -> writeHistogram(h, out);
+            }
+        }
+    }
+
+    private static void writeHistogram(Histogram h, Appendable out) throws IOException {
+        String name = h.name();
+        long[] bounds = h.bounds();
+        long[] counts = h.bucketCounts();
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String le = i < bounds.length ? number(bounds[i] * h.unit()) : "+Inf";
+            out.append(name).append("_bucket{le=\"").append(le).append("\"} ").append(Long.toString(cumulative)).append('\n');
+        }
+        out.append(name).append("_sum ").append(number(h.sum() * h.unit())).append('\n');
+        out.append(name).append("_count ").append(Long.toString(cumulative)).append('\n');
+    }
+
+    private static String number(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        // Twelve significant digits hide the binary noise of scaling (1000 * 1e-9 is not exactly 1e-6).
+        return new BigDecimal(v).round(new MathContext(12)).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
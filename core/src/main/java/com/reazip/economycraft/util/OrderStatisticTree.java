@@ -0,0 +1,149 @@
+package com.reazip.economycraft.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorted set backed by a size-augmented treap: add, remove, rank and positional access in O(log n).
+ * The comparator must be a total order (no two distinct elements compare equal). Not thread-safe.
+ */
+public final class OrderStatisticTree<T> {
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        int size = 1;
+        Node<T> left, right;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private final Random random = new Random();
+    private Node<T> root;
+
+    // Results of the last split; avoids allocating a pair per call.
+    private Node<T> splitLeft, splitRight;
+
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public void add(T value) {
+        split(root, value, false);
+        Node<T> left = splitLeft, right = splitRight;
+        split(right, value, true);
+        // Drop an equal element if present so the tree stays a set.
+        root = merge(merge(left, new Node<>(value, random.nextInt())), splitRight);
+    }
+
+    public boolean remove(T value) {
+        split(root, value, false);
+        Node<T> left = splitLeft, right = splitRight;
+        split(right, value, true);
+        boolean found = splitLeft != null;
+        root = merge(left, splitRight);
+        return found;
+    }
+
+    /** Number of elements strictly before {@code value}. */
+    public int rank(T value) {
+        int rank = 0;
+        Node<T> n = root;
+        while (n != null) {
+            int c = comparator.compare(value, n.value);
+            if (c <= 0) {
+                n = n.left;
+            } else {
+                rank += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return rank;
+    }
+
+    public T get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        Node<T> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n.value;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /** Up to {@code limit} elements starting at position {@code from}, in order. */
+    public List<T> range(int from, int limit) {
+        List<T> out = new ArrayList<>(Math.max(0, Math.min(limit, size() - from)));
+        collect(root, Math.max(0, from), limit, out);
+        return out;
+    }
+
+    private void collect(Node<T> n, int skip, int limit, List<T> out) {
+        if (n == null || out.size() >= limit) return;
+        int leftSize = size(n.left);
+        if (skip < leftSize) collect(n.left, skip, limit, out);
+        if (out.size() >= limit) return;
+        if (skip <= leftSize) out.add(n.value);
+        collect(n.right, Math.max(0, skip - leftSize - 1), limit, out);
+    }
+
+    /** Splits into elements before {@code value} (or up to and including it) and the rest. */
+    private void split(Node<T> n, T value, boolean inclusive) {
+        if (n == null) {
+            splitLeft = splitRight = null;
+            return;
+        }
+        int c = comparator.compare(n.value, value);
+        if (c < 0 || (inclusive && c == 0)) {
+            split(n.right, value, inclusive);
+            n.right = splitLeft;
+            update(n);
+            splitLeft = n;
+        } else {
+            split(n.left, value, inclusive);
+            n.left = splitRight;
+            update(n);
+            splitRight = n;
+        }
+    }
+
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static void update(Node<?> n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+}
@@ -0,0 +1,203 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.core.PendingItemsTest.Stack;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads placing item requests, fulfilling them into the requesters' delivery inboxes and claiming from
+ * those inboxes at once, the way the order menus and {@code /eco orders claim} do. Items only move from open
+ * requests to inboxes to players, so every item requested must end up in exactly one of those places, and
+ * every request must be fulfilled at most once.
+ */
+class DeliveryStressTest {
+    private static final int THREADS = 16;
+    private static final int OPS_PER_THREAD = 20_000;
+    private static final int PLAYERS = 8;
+    private static final Stack[] KINDS = {new Stack("diamond", 0, 64), new Stack("pearl", 0, 16), new Stack("sword", 0, 1)};
+
+    private record Request(int id, UUID requester, Stack item) {}
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void addFulfilDeliverClaimConservesItems() throws Exception {
+        ListingStore<Request> requests = new ListingStore<>();
+        PendingItems<String, Stack> inbox = new PendingItems<>(Stack.OPS);
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) players[i] = new UUID(0, i + 1);
+
+        Map<String, AtomicLong> requested = counters();
+        Map<String, AtomicLong> claimed = counters();
+        Set<Integer> fulfilled = ConcurrentHashMap.newKeySet();
+        Map<UUID, List<Stack>> saved = new ConcurrentHashMap<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        // Daemon threads, so a deadlock fails the test instead of keeping the JVM alive.
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 2, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Menus read the inboxes while they change; every view must be well grouped.
+            Future<?> reader = pool.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    for (UUID player : players) assertGrouped(inbox.view(player));
+                }
+                return null;
+            });
+            // Saves drain the changed inboxes in the background, like DeliveryInbox.capture().
+            Future<?> saver = pool.submit(() -> {
+                start.await();
+                while (running.get()) drain(inbox, saved);
+                return null;
+            });
+
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        UUID player = players[random.nextInt(PLAYERS)];
+                        switch (random.nextInt(5)) {
+                            case 0, 1 -> {
+                                Stack kind = KINDS[random.nextInt(KINDS.length)];
+                                Stack item = Stack.OPS.withCount(kind, 1 + random.nextInt(3 * kind.max()));
+                                int id = requests.allocateId();
+                                requested.get(item.kind()).addAndGet(item.count());
+                                requests.put(id, new Request(id, player, item));
+                            }
+                            case 2 -> {
+                                // Fulfil: whoever removes the request delivers it.
+                                int id = 1 + random.nextInt(Math.max(1, requests.nextId() - 1));
+                                Request r = requests.remove(id);
+                                if (r != null) {
+                                    assertTrue(fulfilled.add(id), "request " + id + " fulfilled twice");
+                                    inbox.addAll(r.requester(), List.of(r.item()));
+                                }
+                            }
+                            case 3 -> {
+                                Map<String, Integer> room = new HashMap<>();
+                                for (Stack kind : KINDS) room.put(kind.kind(), random.nextInt(kind.max() + 1));
+                                int freeSlots = random.nextInt(4);
+                                int roomBefore = room.values().stream().mapToInt(Integer::intValue).sum();
+                                PendingItems.Claim<Stack> claim = inbox.claim(player, room, freeSlots);
+                                int took = 0;
+                                for (Stack s : claim.taken()) {
+                                    assertTrue(s.count() > 0 && s.count() <= s.max(), "claimed " + s);
+                                    claimed.get(s.kind()).addAndGet(s.count());
+                                    took += s.count();
+                                }
+                                assertTrue(took <= roomBefore + freeSlots * 64, "claimed " + took + " items into too little space");
+                                assertTrue(claim.itemsLeft() >= 0);
+                            }
+                            default -> {
+                                if (random.nextBoolean()) {
+                                    for (Stack s : inbox.takeAll(player)) claimed.get(s.kind()).addAndGet(s.count());
+                                } else {
+                                    List<Stack> view = inbox.view(player);
+                                    if (view.isEmpty()) continue;
+                                    int index = random.nextInt(view.size());
+                                    Stack taken = inbox.take(player, index, view.get(index));
+                                    if (taken != null) claimed.get(taken.kind()).addAndGet(taken.count());
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> worker : workers) worker.get(50, TimeUnit.SECONDS);
+            running.set(false);
+            reader.get(5, TimeUnit.SECONDS);
+            saver.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, Long> open = new HashMap<>();
+        for (Request r : requests.values()) open.merge(r.item().kind(), (long) r.item().count(), Long::sum);
+        Map<String, Long> pending = new HashMap<>();
+        for (UUID player : players) {
+            List<Stack> view = inbox.view(player);
+            assertGrouped(view);
+            long items = 0;
+            for (Stack s : view) {
+                pending.merge(s.kind(), (long) s.count(), Long::sum);
+                items += s.count();
+            }
+            assertEquals(items, inbox.itemCount(player));
+            assertEquals(view.size(), inbox.stackCount(player));
+        }
+        for (Stack kind : KINDS) {
+            long inRequests = open.getOrDefault(kind.kind(), 0L);
+            long inInboxes = pending.getOrDefault(kind.kind(), 0L);
+            assertEquals(requested.get(kind.kind()).get(), inRequests + inInboxes + claimed.get(kind.kind()).get(),
+                    kind.kind() + " items were lost or duplicated");
+        }
+        assertEquals(requests.nextId() - 1, fulfilled.size() + requests.size());
+
+        // A final save must see every inbox as it is now.
+        drain(inbox, saved);
+        for (UUID player : players) {
+            List<Stack> view = inbox.view(player);
+            if (view.isEmpty()) {
+                assertNull(saved.get(player), player + " saved with items after emptying");
+            } else {
+                assertEquals(view, saved.get(player));
+            }
+        }
+    }
+
+    private static Map<String, AtomicLong> counters() {
+        Map<String, AtomicLong> counters = new HashMap<>();
+        for (Stack kind : KINDS) counters.put(kind.kind(), new AtomicLong());
+        return counters;
+    }
+
+    private static void drain(PendingItems<String, Stack> inbox, Map<UUID, List<Stack>> saved) {
+        inbox.drainChanged((player, stacks) -> {
+            if (stacks == null) saved.remove(player);
+            else saved.put(player, stacks);
+        });
+    }
+
+    /** Each kind is one run of stacks, none empty or over its max, and only the run's last stack is partial. */
+    private static void assertGrouped(List<Stack> view) {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < view.size(); i++) {
+            Stack s = view.get(i);
+            assertTrue(s.count() > 0 && s.count() <= s.max(), "bad stack " + s);
+            boolean lastOfKind = i + 1 == view.size() || !view.get(i + 1).kind().equals(s.kind());
+            assertTrue(lastOfKind || s.count() == s.max(), "partial stack " + s + " before the end of its kind");
+            if (i == 0 || !view.get(i - 1).kind().equals(s.kind())) {
+                assertTrue(seen.add(s.kind()), s.kind() + " split over two runs");
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerTest {
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+    private static final UUID TAX = new UUID(0, 3);
+
+    @TempDir
+    Path dir;
+    private Ledger ledger;
+
+    @BeforeEach
+    void open() {
+        ledger = open(dir);
+    }
+
+    @AfterEach
+    void close() {
+        ledger.close();
+    }
+
+    private static Ledger open(Path dir) {
+        Ledger ledger = new Ledger(dir, () -> 100, 1_000);
+        ledger.load(Map::of);
+        return ledger;
+    }
+
+    @Test
+    void opensAccountsWithTheStartingBalance() {
+        assertFalse(ledger.has(ALICE));
+        assertEquals(100, ledger.getOrOpen(ALICE));
+        assertEquals(100L, ledger.get(ALICE));
+        assertEquals(1, ledger.size());
+    }
+
+    @Test
+    void clampsBalancesBetweenZeroAndMax() {
+        assertEquals(1_000, ledger.add(ALICE, 5_000));
+        assertEquals(0, ledger.add(ALICE, -5_000));
+        assertEquals(1_000, ledger.set(BOB, 2_000));
+        assertEquals(0, ledger.set(BOB, -1));
+    }
+
+    @Test
+    void removeRefusesWithoutFunds() {
+        assertFalse(ledger.remove(ALICE, 150));
+        // The refused removal still opened the account.
+        assertEquals(100L, ledger.get(ALICE));
+        assertTrue(ledger.remove(ALICE, 60));
+        assertEquals(40L, ledger.get(ALICE));
+    }
+
+    @Test
+    void transferAppliesAllLegsOrNone() {
+        assertTrue(ledger.transfer(Transaction.create().debit(ALICE, 50).credit(BOB, 45).credit(TAX, 5)));
+        assertEquals(50L, ledger.get(ALICE));
+        assertEquals(145L, ledger.get(BOB));
+        assertEquals(105L, ledger.get(TAX));
+
+        assertFalse(ledger.transfer(Transaction.create().debit(ALICE, 80).credit(BOB, 80)));
+        assertEquals(50L, ledger.get(ALICE));
+        assertEquals(145L, ledger.get(BOB));
+    }
+
+    @Test
+    void leaderboardFollowsChanges() {
+        ledger.set(ALICE, 300);
+        ledger.set(BOB, 200);
+        ledger.transfer(Transaction.create().debit(ALICE, 150).credit(BOB, 150));
+        assertEquals(1, ledger.leaderboard().rank(BOB));
+        assertEquals(2, ledger.leaderboard().rank(ALICE));
+
+        ledger.removeAccount(BOB);
+        assertNull(ledger.get(BOB));
+        assertEquals(-1, ledger.leaderboard().rank(BOB));
+        assertEquals(1, ledger.leaderboard().size());
+    }
+
+    @Test
+    void notifiesTheListener() {
+        List<String> changes = new ArrayList<>();
+        ledger.setListener((account, balance) -> changes.add(account + "=" + balance));
+        ledger.add(ALICE, 5);
+        ledger.removeAccount(ALICE);
+        assertEquals(List.of(ALICE + "=105", ALICE + "=null"), changes);
+    }
+
+    @Test
+    void journalSurvivesRestartWithoutSave() {
+        ledger.set(ALICE, 300);
+        ledger.set(BOB, 7);
+        ledger.removeAccount(BOB);
+        ledger.close();
+
+        ledger = open(dir);
+        assertEquals(300L, ledger.get(ALICE));
+        assertFalse(ledger.has(BOB));
+        assertEquals(1, ledger.leaderboard().rank(ALICE));
+    }
+
+    @Test
+    void snapshotAndJournalCombineOnRestart() throws Exception {
+        ledger.set(ALICE, 300);
+        ledger.save();
+        ledger.add(ALICE, 20);
+        ledger.set(BOB, 9);
+        ledger.close();
+
+        ledger = open(dir);
+        assertEquals(320L, ledger.get(ALICE));
+        assertEquals(9L, ledger.get(BOB));
+    }
+
+    @Test
+    void loadsLegacyBalancesWhenNoSnapshotExists() {
+        ledger.close();
+        ledger = new Ledger(dir, () -> 100, 1_000);
+        assertTrue(ledger.load(() -> Map.of(ALICE, 42L)));
+        assertEquals(42L, ledger.get(ALICE));
+        assertEquals(1, ledger.leaderboard().rank(ALICE));
+    }
+}
@@ -0,0 +1,119 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads running multi-leg transfers over a small set of accounts, so transactions keep overlapping on
+ * the same stripes in different orders. Every transfer moves money between ledger accounts only, so the total
+ * must stay the same whatever is applied or refused.
+ */
+class LedgerTransferStressTest {
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+    private static final int ACCOUNTS = 50;
+    private static final long START = 1_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void multiLegTransfersConserveMoney() throws Exception {
+        Ledger ledger = new Ledger(dir, () -> 0, Long.MAX_VALUE / 4);
+        ledger.load(Map::of);
+        UUID[] accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = UUID.randomUUID();
+            ledger.set(accounts[i], START);
+        }
+        long total = ACCOUNTS * START;
+
+        AtomicLong applied = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        // Daemon threads, so a deadlock fails the test instead of keeping the JVM alive.
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> watcher = pool.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    for (UUID account : accounts) {
+                        long balance = ledger.get(account);
+                        assertTrue(balance >= 0, account + " went negative: " + balance);
+                    }
+                }
+                return null;
+            });
+
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        // A buyer pays a seller and a tax account, like a shop purchase; amounts may exceed the
+                        // buyer's balance so some transfers are refused.
+                        UUID buyer = accounts[random.nextInt(ACCOUNTS)];
+                        UUID seller = accounts[random.nextInt(ACCOUNTS)];
+                        UUID tax = accounts[random.nextInt(ACCOUNTS)];
+                        long price = 1 + random.nextLong(2 * START);
+                        long cut = price / 10;
+                        Transaction tx = Transaction.create()
+                                .debit(buyer, price)
+                                .credit(seller, price - cut)
+                                .credit(tax, cut);
+                        if (ledger.transfer(tx)) applied.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> worker : workers) worker.get(50, TimeUnit.SECONDS);
+            running.set(false);
+            watcher.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+            ledger.close();
+        }
+
+        long sum = 0;
+        for (UUID account : accounts) {
+            long balance = ledger.get(account);
+            assertTrue(balance >= 0, account + " went negative: " + balance);
+            sum += balance;
+        }
+        assertEquals(total, sum, "money was created or destroyed");
+        assertEquals(ACCOUNTS, ledger.size());
+        assertTrue(applied.get() > 0, "no transfer was applied");
+
+        // The leaderboard, updated outside the locks, must end up matching the balances.
+        for (Map.Entry<UUID, Long> entry : ledger.leaderboard().page(0, ACCOUNTS)) {
+            assertEquals(ledger.get(entry.getKey()), entry.getValue(), "stale leaderboard entry");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.reazip.economycraft.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListingStoreTest {
+    @Test
+    void handsOutIncreasingIds() {
+        ListingStore<String> store = new ListingStore<>();
+        assertEquals(1, store.allocateId());
+        assertEquals(2, store.allocateId());
+        assertEquals(3, store.nextId());
+    }
+
+    @Test
+    void iteratesOldestFirst() {
+        ListingStore<String> store = new ListingStore<>();
+        store.put(3, "c");
+        store.put(1, "a");
+        store.put(2, "b");
+        assertEquals(List.of("a", "b", "c"), List.copyOf(store.values()));
+        assertEquals(List.of("a", "b", "c"), store.snapshot());
+    }
+
+    @Test
+    void replacesOnlyLiveIds() {
+        ListingStore<String> store = new ListingStore<>();
+        store.put(1, "a");
+        assertTrue(store.replace(1, "b"));
+        assertEquals("b", store.get(1));
+
+        assertEquals("b", store.remove(1));
+        assertFalse(store.replace(1, "c"));
+        assertNull(store.get(1));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void snapshotIsNotLive() {
+        ListingStore<String> store = new ListingStore<>();
+        store.put(1, "a");
+        List<String> snapshot = store.snapshot();
+        store.put(2, "b");
+        assertEquals(List.of("a"), snapshot);
+    }
+
+    @Test
+    void keepsLoadedNextId() {
+        ListingStore<String> store = new ListingStore<>();
+        store.setNextId(42);
+        assertEquals(42, store.allocateId());
+    }
+
+    @Test
+    void clearResetsIds() {
+        ListingStore<String> store = new ListingStore<>();
+        store.put(store.allocateId(), "a");
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(1, store.allocateId());
+    }
+}
@@ -0,0 +1,145 @@
+package com.reazip.economycraft.core;
+
+import com.reazip.economycraft.core.OrderBook.Quote;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderBookTest {
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+    private static final UUID CAROL = new UUID(0, 3);
+
+    @Test
+    void comparesUnitPrices() {
+        // 10 for 2 is cheaper per item than 6 for 1.
+        assertTrue(OrderBook.BY_UNIT_PRICE.compare(new Quote(1, ALICE, 10, 2), new Quote(2, BOB, 6, 1)) < 0);
+        assertEquals(0, OrderBook.BY_UNIT_PRICE.compare(new Quote(1, ALICE, 10, 2), new Quote(2, BOB, 5, 1)));
+    }
+
+    @Test
+    void noCrossWhenCheapestAskIsAboveBestBid() {
+        OrderBook<String> book = new OrderBook<>();
+        book.putAsk("stone", new Quote(1, ALICE, 20, 1));
+        book.putBid("stone", new Quote(2, BOB, 10, 1));
+        assertNull(book.nextCrossingBid("stone", null));
+        assertNull(book.nextCrossingBid("dirt", null));
+    }
+
+    @Test
+    void crossingBidsAreBestFirstThenOldest() {
+        OrderBook<String> book = new OrderBook<>();
+        book.putAsk("stone", new Quote(1, ALICE, 5, 1));
+        Quote low = new Quote(2, BOB, 6, 1);
+        Quote highLater = new Quote(4, CAROL, 20, 2);
+        Quote highFirst = new Quote(3, BOB, 10, 1);
+        book.putBid("stone", low);
+        book.putBid("stone", highLater);
+        book.putBid("stone", highFirst);
+        assertEquals(List.of(highFirst, highLater, low), crossingBids(book, "stone"));
+
+        // Only bids at or above the cheapest ask cross.
+        book.putAsk("stone", new Quote(1, ALICE, 8, 1));
+        assertEquals(List.of(highFirst, highLater), crossingBids(book, "stone"));
+    }
+
+    @Test
+    void nextCrossingBidSkipsPastRemovedBids() {
+        OrderBook<String> book = new OrderBook<>();
+        book.putAsk("stone", new Quote(1, ALICE, 5, 1));
+        Quote first = new Quote(2, BOB, 9, 1);
+        Quote second = new Quote(3, CAROL, 7, 1);
+        book.putBid("stone", first);
+        book.putBid("stone", second);
+        book.removeBid(first.id());
+        assertEquals(second, book.nextCrossingBid("stone", first));
+    }
+
+    @Test
+    void bestAskSkipsTheBiddersOwnAsks() {
+        OrderBook<String> book = new OrderBook<>();
+        Quote own = new Quote(1, BOB, 4, 1);
+        Quote other = new Quote(2, ALICE, 5, 1);
+        book.putAsk("stone", own);
+        book.putAsk("stone", other);
+        book.putAsk("stone", new Quote(3, CAROL, 9, 1));
+        assertEquals(other, book.bestAskFor("stone", new Quote(10, BOB, 8, 1)));
+        assertNull(book.bestAskFor("stone", new Quote(11, BOB, 4, 1)));
+        assertNull(book.bestAskFor("dirt", new Quote(12, BOB, 100, 1)));
+    }
+
+    @Test
+    void nextAskForWalksTheCrossingAsks() {
+        OrderBook<String> book = new OrderBook<>();
+        Quote cheap = new Quote(1, ALICE, 4, 1);
+        Quote own = new Quote(2, BOB, 5, 1);
+        Quote mid = new Quote(3, CAROL, 6, 1);
+        book.putAsk("stone", cheap);
+        book.putAsk("stone", own);
+        book.putAsk("stone", mid);
+        book.putAsk("stone", new Quote(4, CAROL, 9, 1));
+        Quote bid = new Quote(10, BOB, 8, 1);
+        assertEquals(cheap, book.nextAskFor("stone", bid, null));
+        assertEquals(mid, book.nextAskFor("stone", bid, cheap));
+        assertNull(book.nextAskFor("stone", bid, mid));
+    }
+
+    @Test
+    void fillUsesTheListingsTerms() {
+        // A listing of 4 for 100 at 10% tax: the buyer pays 110, the seller gets the full 100.
+        Quote ask = new Quote(1, ALICE, 100, 4);
+        OrderBook.Fill fill = OrderBook.fill(new Quote(2, BOB, 200, 4), ask, 0.1);
+        assertEquals(new OrderBook.Fill(4, 100, 10), fill);
+        assertEquals(110, fill.buyerPays());
+        assertEquals(Map.of(BOB, -110L, ALICE, 100L), fill.transaction(BOB, ALICE).legs());
+    }
+
+    @Test
+    void partialFillIsPricedFromTheAsk() {
+        Quote ask = new Quote(1, ALICE, 100, 4);
+        OrderBook.Fill fill = OrderBook.fill(new Quote(2, BOB, 90, 3), ask, 0.1);
+        assertEquals(3, fill.quantity());
+        assertEquals(75, fill.cost());
+        assertEquals(8, fill.tax());
+        assertEquals(75L, fill.transaction(BOB, ALICE).legs().get(ALICE));
+    }
+
+    @Test
+    void putReplacesQuoteWithSameId() {
+        OrderBook<String> book = new OrderBook<>();
+        book.putAsk("stone", new Quote(1, ALICE, 5, 1));
+        book.putAsk("dirt", new Quote(1, ALICE, 3, 1));
+        assertEquals(1, book.askCount());
+        assertEquals(Set.of("dirt"), book.keys());
+    }
+
+    @Test
+    void removingLastQuoteDropsTheKey() {
+        OrderBook<String> book = new OrderBook<>();
+        book.putAsk("stone", new Quote(1, ALICE, 5, 1));
+        book.putBid("stone", new Quote(2, BOB, 5, 1));
+        book.removeAsk(1);
+        assertEquals(Set.of("stone"), book.keys());
+        book.removeBid(2);
+        book.removeBid(2);
+        assertEquals(Set.of(), book.keys());
+        assertEquals(0, book.askCount());
+        assertEquals(0, book.bidCount());
+    }
+
+    private static List<Quote> crossingBids(OrderBook<String> book, String key) {
+        List<Quote> bids = new ArrayList<>();
+        for (Quote bid = book.nextCrossingBid(key, null); bid != null; bid = book.nextCrossingBid(key, bid)) {
+            bids.add(bid);
+        }
+        return bids;
+    }
+}
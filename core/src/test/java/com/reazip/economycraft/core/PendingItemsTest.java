@@ -0,0 +1,107 @@
+package com.reazip.economycraft.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PendingItemsTest {
+    private static final UUID ALICE = new UUID(0, 1);
+
+    /** A stack of {@code count} items of {@code kind}, at most {@code max} per stack. */
+    record Stack(String kind, int count, int max) {
+        static final PendingItems.Stacks<String, Stack> OPS = new PendingItems.Stacks<>() {
+            @Override public String kind(Stack stack) { return stack.kind(); }
+            @Override public int count(Stack stack) { return stack.count(); }
+            @Override public int maxCount(Stack stack) { return stack.max(); }
+            @Override public Stack withCount(Stack stack, int count) { return new Stack(stack.kind(), count, stack.max()); }
+        };
+
+        static Stack diamonds(int count) {
+            return new Stack("diamond", count, 64);
+        }
+
+        static Stack swords(int count) {
+            return new Stack("sword", count, 1);
+        }
+    }
+
+    @Test
+    void mergesIntoTheLastPartialStack() {
+        PendingItems<String, Stack> items = new PendingItems<>(Stack.OPS);
+        items.addAll(ALICE, List.of(Stack.diamonds(40)));
+        items.addAll(ALICE, List.of(Stack.diamonds(40), Stack.swords(2), Stack.diamonds(0)));
+        assertEquals(List.of(Stack.diamonds(64), Stack.diamonds(16), Stack.swords(1), Stack.swords(1)),
+                items.view(ALICE));
+        assertEquals(4, items.stackCount(ALICE));
+        assertEquals(82, items.itemCount(ALICE));
+    }
+
+    @Test
+    void splitsLargeStacks() {
+        PendingItems<String, Stack> items = new PendingItems<>(Stack.OPS);
+        items.addAll(ALICE, List.of(Stack.diamonds(150)));
+        assertEquals(List.of(Stack.diamonds(64), Stack.diamonds(64), Stack.diamonds(22)), items.view(ALICE));
+    }
+
+    @Test
+    void takeChecksTheExpectedStack() {
+        PendingItems<String, Stack> items = new PendingItems<>(Stack.OPS);
+        items.addAll(ALICE, List.of(Stack.diamonds(70), Stack.swords(1)));
+        assertNull(items.take(ALICE, 1, Stack.diamonds(64)));
+        assertEquals(Stack.diamonds(6), items.take(ALICE, 1, Stack.diamonds(6)));
+        assertEquals(Stack.swords(1), items.take(ALICE, 1, Stack.swords(1)));
+        assertNull(items.take(ALICE, 5, Stack.swords(1)));
+        assertEquals(64, items.itemCount(ALICE));
+    }
+
+    @Test
+    void claimFillsRoomThenFreeSlotsFromTheTail() {
+        PendingItems<String, Stack> items = new PendingItems<>(Stack.OPS);
+        items.addAll(ALICE, List.of(Stack.diamonds(100), Stack.swords(3)));
+        Map<String, Integer> room = new HashMap<>(Map.of("diamond", 10));
+
+        // Room for 10 diamonds plus one free slot fits 74: the partial stack of 36, then 38 off the full one.
+        PendingItems.Claim<Stack> claim = items.claim(ALICE, room, 1);
+        assertEquals(List.of(Stack.diamonds(36), Stack.diamonds(38)), claim.taken());
+        assertEquals(29, claim.itemsLeft());
+        assertEquals(0, room.get("diamond"));
+        assertEquals(List.of(Stack.diamonds(26), Stack.swords(1), Stack.swords(1), Stack.swords(1)), items.view(ALICE));
+
+        claim = items.claim(ALICE, new HashMap<>(Map.of("diamond", 4)), 0);
+        assertEquals(List.of(Stack.diamonds(4)), claim.taken());
+        assertEquals(List.of(Stack.diamonds(22), Stack.swords(1), Stack.swords(1), Stack.swords(1)), items.view(ALICE));
+
+        claim = items.claim(ALICE, new HashMap<>(), 10);
+        assertEquals(0, claim.itemsLeft());
+        assertEquals(0, items.stackCount(ALICE));
+    }
+
+    @Test
+    void viewAndDrainReturnCopies() {
+        PendingItems<String, Stack> items = new PendingItems<>(Stack.OPS);
+        items.addAll(ALICE, List.of(Stack.diamonds(5)));
+        Stack first = items.view(ALICE).get(0);
+        assertNotSame(first, items.view(ALICE).get(0));
+
+        List<List<Stack>> drained = new ArrayList<>();
+        items.drainChanged((player, copy) -> drained.add(copy));
+        assertEquals(List.of(List.of(Stack.diamonds(5))), drained);
+
+        drained.clear();
+        items.drainChanged((player, copy) -> drained.add(copy));
+        assertEquals(List.of(), drained);
+
+        items.takeAll(ALICE);
+        items.drainChanged((player, copy) -> drained.add(copy));
+        assertEquals(1, drained.size());
+        assertNull(drained.get(0));
+    }
+}
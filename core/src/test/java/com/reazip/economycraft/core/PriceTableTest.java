@@ -0,0 +1,71 @@
+package com.reazip.economycraft.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PriceTableTest {
+    private record Price(String category, long unitBuy) implements PriceTable.Priced {}
+
+    private static final Price STONE = new Price("Blocks.Stone", 2);
+    private static final Price GRANITE = new Price("Blocks.Stone", 3);
+    private static final Price OAK = new Price("Blocks.Wood.Oak", 4);
+    private static final Price DIAMOND = new Price("Ores", 100);
+    private static final Price BEDROCK = new Price("Blocks.Special", 0);
+    private static final Price UNSORTED = new Price(null, 5);
+
+    private static PriceTable<String, Price> table() {
+        Map<String, Price> prices = new LinkedHashMap<>();
+        prices.put("stone", STONE);
+        prices.put("granite", GRANITE);
+        prices.put("oak_log", OAK);
+        prices.put("diamond", DIAMOND);
+        prices.put("bedrock", BEDROCK);
+        prices.put("mystery", UNSORTED);
+        return new PriceTable<>(prices);
+    }
+
+    @Test
+    void looksUpEntries() {
+        PriceTable<String, Price> table = table();
+        assertEquals(6, table.size());
+        assertEquals(DIAMOND, table.get("diamond"));
+        assertNull(table.get("dirt"));
+    }
+
+    @Test
+    void firstPricedPrefersTheFirstKnownKey() {
+        PriceTable<String, Price> table = table();
+        assertEquals("stone", table.firstPriced(List.of("polished_stone", "stone", "diamond")));
+        assertNull(table.firstPriced(List.of("dirt")));
+    }
+
+    @Test
+    void buyViewsSkipUnbuyableAndUncategorizedEntries() {
+        PriceTable<String, Price> table = table();
+        assertEquals(List.of("Blocks.Stone", "Blocks.Wood.Oak", "Ores"), table.buyCategories());
+        assertEquals(List.of("Blocks", "Ores"), table.topCategories());
+        assertEquals(List.of(), table.buyableByCategory("Blocks.Special"));
+    }
+
+    @Test
+    void everyDottedPrefixHasSubcategories() {
+        PriceTable<String, Price> table = table();
+        assertEquals(List.of("Stone", "Wood.Oak"), table.subcategories("Blocks"));
+        assertEquals(List.of("Oak"), table.subcategories("blocks.wood"));
+        assertEquals(List.of(), table.subcategories("Ores"));
+        assertEquals(List.of(), table.subcategories(null));
+    }
+
+    @Test
+    void entriesByCategoryIgnoreCase() {
+        PriceTable<String, Price> table = table();
+        assertEquals(List.of(STONE, GRANITE), table.buyableByCategory("blocks.STONE"));
+        assertEquals(List.of(), table.buyableByCategory(null));
+    }
+}
@@ -0,0 +1,81 @@
+package com.reazip.economycraft.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordSnapshotTest {
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+
+    @TempDir
+    Path dir;
+
+    private static Map<UUID, Long> load(Path file) throws Exception {
+        Map<UUID, Long> loaded = new HashMap<>();
+        new RecordSnapshot<>(file, RecordSnapshot.LONG).load(loaded::put);
+        return loaded;
+    }
+
+    @Test
+    void savesChangedAndRemovedRecords() throws Exception {
+        Path file = dir.resolve("balances.dat");
+        RecordSnapshot<Long> snapshot = new RecordSnapshot<>(file, RecordSnapshot.LONG);
+        Map<UUID, Long> values = new HashMap<>(Map.of(ALICE, 10L, BOB, 20L));
+        snapshot.markDirty(ALICE);
+        snapshot.markDirty(BOB);
+        snapshot.save(values::get);
+        assertFalse(snapshot.isDirty());
+
+        values.put(ALICE, 11L);
+        values.remove(BOB);
+        snapshot.markDirty(ALICE);
+        snapshot.markDirty(BOB);
+        assertTrue(snapshot.isDirty());
+        snapshot.save(values::get);
+        assertEquals(Map.of(ALICE, 11L), load(file));
+    }
+
+    @Test
+    @Timeout(10)
+    void markDirtyDoesNotWaitForASave() throws Exception {
+        Path file = dir.resolve("balances.dat");
+        RecordSnapshot<Long> snapshot = new RecordSnapshot<>(file, RecordSnapshot.LONG);
+        Map<UUID, Long> values = new ConcurrentHashMap<>(Map.of(ALICE, 10L));
+        snapshot.markDirty(ALICE);
+        snapshot.save(values::get);
+
+        values.put(ALICE, 12L);
+        snapshot.markDirty(ALICE);
+        // A change made on another thread while the save is writing; it must not block on the save.
+        snapshot.save(id -> {
+            if (!values.containsKey(BOB)) {
+                Thread other = new Thread(() -> {
+                    values.put(BOB, 30L);
+                    snapshot.markDirty(BOB);
+                });
+                other.start();
+                try {
+                    other.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return values.get(id);
+        });
+        assertTrue(snapshot.isDirty());
+
+        snapshot.save(values::get);
+        assertEquals(Map.of(ALICE, 12L, BOB, 30L), load(file));
+    }
+}